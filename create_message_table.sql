@@ -1,4 +1,6 @@
 -- you may use this to create a table for messages in your database ready2go with JdbcMessageProvider
+-- see create_message_table_h2.sql, create_message_table_mysql.sql and create_message_table_postgresql.sql for
+-- tables with the recommended primary key and indexes
 
 CREATE TABLE `Message` (
     `basename` VARCHAR( 31 ) NOT NULL ,
@@ -8,4 +10,3 @@ CREATE TABLE `Message` (
     `key` VARCHAR( 255 ) NULL ,
     `message` TEXT NULL
 );
-
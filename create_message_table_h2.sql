@@ -0,0 +1,23 @@
+-- table for messages in H2 with the recommended primary key and indexes for JdbcMessageProvider
+--
+-- the primary key serves reading and writing the messages of a basename, the index on key serves reading messages on
+-- demand (lazyLookup). Parts of the locale that are not set are stored as empty strings, since they are part of the
+-- primary key.
+
+CREATE TABLE `Message` (
+    `basename` VARCHAR( 31 ) NOT NULL ,
+    `language` VARCHAR( 7 ) DEFAULT '' NOT NULL ,
+    `country` VARCHAR( 7 ) DEFAULT '' NOT NULL ,
+    `variant` VARCHAR( 7 ) DEFAULT '' NOT NULL ,
+    `key` VARCHAR( 255 ) NOT NULL ,
+    `message` CLOB NULL ,
+    -- optional, for reading changed messages only (lastModifiedColumn and deletedColumn)
+    `lastModified` TIMESTAMP NULL ,
+    `deleted` BOOLEAN NULL ,
+    PRIMARY KEY ( `basename`, `language`, `country`, `variant`, `key` )
+);
+
+CREATE INDEX `Message_key` ON `Message` ( `key`, `basename` );
+
+-- optional, for reading changed messages only
+CREATE INDEX `Message_lastModified` ON `Message` ( `lastModified` );
@@ -0,0 +1,21 @@
+-- table for messages in MySQL with the recommended primary key and indexes for JdbcMessageProvider
+--
+-- InnoDB stores rows in the order of the primary key, so reading the messages of a basename is a single range scan
+-- that covers all columns. The index on key serves reading messages on demand (lazyLookup). Parts of the locale that
+-- are not set are stored as empty strings, since they are part of the primary key.
+
+CREATE TABLE `Message` (
+    `basename` VARCHAR( 31 ) NOT NULL ,
+    `language` VARCHAR( 7 ) NOT NULL DEFAULT '' ,
+    `country` VARCHAR( 7 ) NOT NULL DEFAULT '' ,
+    `variant` VARCHAR( 7 ) NOT NULL DEFAULT '' ,
+    `key` VARCHAR( 255 ) NOT NULL ,
+    `message` TEXT NULL ,
+    -- optional, for reading changed messages only (lastModifiedColumn and deletedColumn)
+    `lastModified` TIMESTAMP NULL ,
+    `deleted` BOOLEAN NULL ,
+    PRIMARY KEY ( `basename`, `language`, `country`, `variant`, `key` ),
+    INDEX `Message_key` ( `key`, `basename` ),
+    -- optional, for reading changed messages only
+    INDEX `Message_lastModified` ( `lastModified` )
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
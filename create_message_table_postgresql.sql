@@ -0,0 +1,27 @@
+-- table for messages in PostgreSQL with the recommended primary key and indexes for JdbcMessageProvider
+--
+-- configure the JdbcMessageProvider with <property name="delimiter" value="&quot;"/> for this table. The primary key
+-- serves reading and writing the messages of a basename, the index on key serves reading messages on demand
+-- (lazyLookup). Parts of the locale that are not set are stored as empty strings, since they are part of the primary
+-- key.
+
+CREATE TABLE "Message" (
+    "basename" VARCHAR( 31 ) NOT NULL ,
+    "language" VARCHAR( 7 ) NOT NULL DEFAULT '' ,
+    "country" VARCHAR( 7 ) NOT NULL DEFAULT '' ,
+    "variant" VARCHAR( 7 ) NOT NULL DEFAULT '' ,
+    "key" VARCHAR( 255 ) NOT NULL ,
+    "message" TEXT NULL ,
+    -- optional, for reading changed messages only (lastModifiedColumn and deletedColumn)
+    "lastModified" TIMESTAMP NULL ,
+    "deleted" BOOLEAN NULL ,
+    PRIMARY KEY ( "basename", "language", "country", "variant", "key" )
+);
+
+CREATE INDEX "Message_key" ON "Message" ( "key", "basename" );
+
+-- optional, for reading changed messages only
+CREATE INDEX "Message_lastModified" ON "Message" ( "lastModified" );
+
+-- keeps the rows of a basename together, so reading them touches few pages (repeat after many changes)
+CLUSTER "Message" USING "Message_pkey";
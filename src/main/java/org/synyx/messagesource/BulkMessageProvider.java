@@ -0,0 +1,31 @@
+package org.synyx.messagesource;
+
+import java.util.Collection;
+import java.util.Map;
+
+
+/**
+ * {@link MessageProvider} that is able to return the messages of many basenames at once, which is considerably cheaper
+ * than calling {@link #getMessages(String)} for each of them (e.g. a single query instead of one per basename).
+ *
+ * @author  agent - agent@local
+ */
+public interface BulkMessageProvider extends MessageProvider {
+
+    /**
+     * Returns the messages of all available basenames.
+     *
+     * @return  a {@link Map} of basename to its {@link Messages}, containing all available basenames
+     */
+    Map<String, Messages> getAllMessages();
+
+
+    /**
+     * Returns the messages of the given basenames. Basenames without any messages may be missing in the result.
+     *
+     * @param  basenames  the basenames to receive {@link Messages} for
+     *
+     * @return  a {@link Map} of basename to its {@link Messages}
+     */
+    Map<String, Messages> getMessages(Collection<String> basenames);
+}
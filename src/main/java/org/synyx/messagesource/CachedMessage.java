@@ -0,0 +1,127 @@
+package org.synyx.messagesource;
+
+import java.text.MessageFormat;
+
+import java.util.Locale;
+
+
+/**
+ * A message as held by {@link InitializableMessageSource}: the message as defined, the {@link Locale} to format it
+ * with and its compiled {@link MessageFormat} as well as the message formatted without arguments, if it was compiled
+ * up front.
+ *
+ * @author  agent - agent@local
+ */
+public final class CachedMessage {
+
+    private final String message;
+    private final Locale locale;
+    private final MessageFormat format;
+    private volatile String text;
+
+    /**
+     * Copies of the format owned by single threads, created on first use.
+     */
+    private volatile ThreadLocal<MessageFormat> threadFormats;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param  message  the message as defined (not null)
+     * @param  locale  the {@link Locale} to format the message with, may be null
+     * @param  format  the {@link MessageFormat} compiled from the message or null if it is compiled on demand
+     */
+    public CachedMessage(String message, Locale locale, MessageFormat format) {
+
+        this.message = message;
+        this.locale = locale;
+        this.format = format;
+
+        // the format is not shared yet, so it can be applied without locking
+        this.text = format != null ? format.format(new Object[0]) : null;
+    }
+
+    /**
+     * Returns the message as defined, without any formatting applied.
+     *
+     * @return  the message
+     */
+    public String getMessage() {
+
+        return message;
+    }
+
+
+    /**
+     * Returns the {@link Locale} to format the message with.
+     *
+     * @return  the {@link Locale} or null
+     */
+    public Locale getLocale() {
+
+        return locale;
+    }
+
+
+    /**
+     * Returns the message formatted without arguments (with quotes like '' unescaped) or null if it was not formatted
+     * yet.
+     *
+     * @return  the formatted message or null
+     */
+    public String getText() {
+
+        return text;
+    }
+
+
+    /**
+     * Keeps the message formatted without arguments, once it is formatted on demand.
+     *
+     * @param  text  the formatted message
+     */
+    void setText(String text) {
+
+        this.text = text;
+    }
+
+
+    /**
+     * Returns the {@link MessageFormat} compiled from the message or null if it is compiled on demand.
+     *
+     * @return  the {@link MessageFormat} or null
+     */
+    public MessageFormat getFormat() {
+
+        return format;
+    }
+
+
+    /**
+     * Returns a copy of the given {@link MessageFormat} of this message that only the calling thread uses, so it can be
+     * applied without locking. The copy is made on the first call per thread and kept as long as this message.
+     *
+     * @param  format  the shared {@link MessageFormat} of this message
+     *
+     * @return  the {@link MessageFormat} of the calling thread
+     */
+    public MessageFormat getThreadFormat(MessageFormat format) {
+
+        ThreadLocal<MessageFormat> formats = threadFormats;
+
+        // created at most a few times if threads race, losing only the copies made meanwhile
+        if (formats == null) {
+            formats = new ThreadLocal<MessageFormat>();
+            threadFormats = formats;
+        }
+
+        MessageFormat threadFormat = formats.get();
+
+        if (threadFormat == null) {
+            threadFormat = (MessageFormat) format.clone();
+            formats.set(threadFormat);
+        }
+
+        return threadFormat;
+    }
+}
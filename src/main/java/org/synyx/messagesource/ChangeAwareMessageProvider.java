@@ -0,0 +1,23 @@
+package org.synyx.messagesource;
+
+import java.util.Collection;
+
+
+/**
+ * {@link MessageProvider} that is able to tell which basenames changed since a given point in time. This allows
+ * {@link InitializableMessageSource#reloadChanged()} to reload only these basenames instead of all of them.
+ *
+ * @author  agent - agent@local
+ */
+public interface ChangeAwareMessageProvider extends MessageProvider {
+
+    /**
+     * Returns the basenames whose messages changed (or may have changed) since the given point in time. Returning a
+     * basename that did not change is allowed, missing one that did is not.
+     *
+     * @param  since  the point in time in milliseconds since the epoch (see {@link System#currentTimeMillis()})
+     *
+     * @return  the basenames that changed
+     */
+    Collection<String> getChangedBaseNames(long since);
+}
@@ -0,0 +1,40 @@
+package org.synyx.messagesource;
+
+/**
+ * {@link MessageProvider} that is able to return only the messages that changed since a given watermark. This allows
+ * {@link InitializableMessageSource#reloadChanged()} to apply the changes to the messages it holds instead of reading
+ * whole basenames again.
+ *
+ * @author  agent - agent@local
+ */
+public interface DeltaMessageProvider extends MessageProvider {
+
+    /**
+     * Returns whether this is able to return changes in its current configuration. If not,
+     * {@link #getWatermark()} and {@link #getMessageDelta(long)} must not be called and this is treated like any other
+     * {@link MessageProvider}.
+     *
+     * @return  true if changes can be read
+     */
+    boolean supportsDelta();
+
+
+    /**
+     * Returns the current watermark. Reading all messages and then asking for the changes since a watermark returned
+     * before reading them must not miss any change.
+     *
+     * @return  the current watermark
+     */
+    long getWatermark();
+
+
+    /**
+     * Returns the messages of all basenames that were added, changed or removed since the given watermark. Returning
+     * changes that happened before the watermark again is allowed, missing changes is not.
+     *
+     * @param  watermark  the watermark as returned by {@link #getWatermark()} or {@link MessageDelta#getWatermark()}
+     *
+     * @return  the changes
+     */
+    MessageDelta getMessageDelta(long watermark);
+}
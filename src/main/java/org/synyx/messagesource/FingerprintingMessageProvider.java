@@ -0,0 +1,22 @@
+package org.synyx.messagesource;
+
+import java.util.Map;
+
+
+/**
+ * {@link MessageProvider} that is able to return a fingerprint of the messages of each basename cheaply (without
+ * reading all the messages). If the messages of a basename change, its fingerprint changes as well, so comparing
+ * fingerprints tells which basenames have to be read again.
+ *
+ * @author  agent - agent@local
+ */
+public interface FingerprintingMessageProvider extends MessageProvider {
+
+    /**
+     * Returns the fingerprints of all available basenames. The fingerprints are opaque: they can only be compared to
+     * fingerprints returned earlier by the same {@link FingerprintingMessageProvider}.
+     *
+     * @return  a {@link Map} of basename to fingerprint, containing all available basenames
+     */
+    Map<String, String> getFingerprints();
+}
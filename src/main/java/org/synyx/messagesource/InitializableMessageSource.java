@@ -1,14 +1,27 @@
 package org.synyx.messagesource;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.MessageSource;
 import org.springframework.context.support.AbstractMessageSource;
 import org.springframework.util.Assert;
-import org.synyx.messagesource.util.LocaleUtils;
+import org.synyx.messagesource.util.BoundedConcurrentCache;
+import org.synyx.messagesource.util.CacheStatistics;
+import org.synyx.messagesource.util.InitializationStatistics;
 import org.synyx.messagesource.util.MessageInitializationException;
 
 import java.text.MessageFormat;
+
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -36,13 +49,16 @@ import java.util.*;
  * resolved (and read from the {@link MessageProvider}). If you do not provide a basename all the messages delivered
  * from the {@link MessageProvider} are used.</p>
  *
+ * <p>Note for subclasses: since 0.8 the messages are published as a whole and never modified in place, so the
+ * protected fields messages and resolvingPath no longer exist and {@link #initialize(String)} returns the messages of
+ * the basename instead of adding them to the messages field. Subclasses overriding it have to return the (possibly
+ * modified) result of the super-implementation.</p>
+ *
  * @author  Marc Kannegiesser - kannegiesser@synyx.de
  * @auther  Amit Pal Saluja - amitpal.saluja@citrix.com
  */
-public class InitializableMessageSource extends AbstractMessageSource implements InitializingBean {
+public class InitializableMessageSource extends AbstractMessageSource implements InitializingBean, DisposableBean {
 
-    protected Map<Locale, List<String>> resolvingPath = new HashMap<Locale, List<String>>();
-    protected Map<String, Map<String, MessageFormat>> messages;
     protected Locale defaultLocale;
     protected MessageProvider messageProvider;
     protected Boolean returnUnresolvedCode = false;
@@ -60,242 +76,1342 @@ public class InitializableMessageSource extends AbstractMessageSource implements
     protected boolean basenameRestriction = false;
 
     /**
-     * Initializes messages by retrieving them from the set {@link MessageProvider}. This also leads to a reset of the
-     * resolving-paths used to cache lookup-paths for messages
+     * The currently published messages. This is replaced as a whole by {@link #initialize()} and never modified in
+     * place, so resolving never sees a partially initialized state.
      */
-    public void initialize() {
+    private volatile MessageSnapshot snapshot = MessageSnapshot.EMPTY;
 
-        // reset the path-cache (default-locale could have been changed)
-        resolvingPath = new HashMap<Locale, List<String>>();
+    /**
+     * Maximum number of {@link Locale}s whose resolving-path is cached.
+     */
+    private int resolvingPathCacheSize = 256;
 
-        if (!basenameRestriction) {
-            basenames = new ArrayList<String>();
-            basenames.addAll(messageProvider.getAvailableBaseNames());
-        }
+    /**
+     * Property that indicates if each resolved {@link MessageFormat} is a copy only used by the calling thread (=true)
+     * or the cached instance shared by all threads (=false).
+     */
+    private boolean threadConfinedFormats = false;
 
-        messages = new HashMap<String, Map<String, MessageFormat>>();
+    /**
+     * {@link Executor} used to initialize the basenames in parallel or null to initialize them one after another.
+     */
+    private Executor initializationExecutor;
 
-        for (String basename : basenames) {
-            initialize(basename);
-        }
-    }
+    /**
+     * Interval in milliseconds to refresh the messages in the background or 0 to not refresh them.
+     */
+    private long refreshInterval = 0;
+
+    /**
+     * Maximum delay in milliseconds between failed refreshes.
+     */
+    private long maxRefreshBackoff = TimeUnit.MINUTES.toMillis(10);
+
+    private ScheduledExecutorService refreshScheduler;
+
+    /**
+     * Property that indicates if background refreshes reload only changed basenames (=true) or all of them (=false).
+     */
+    private boolean incrementalRefresh = false;
+
+    /**
+     * Property that indicates if basenames are reloaded as soon as an {@link ObservableMessageProvider} reports
+     * changes.
+     */
+    private boolean reloadOnChange = false;
+
+    private MessageChangeListener changeListener;
+
+    /**
+     * Point in time the messages were last loaded (or checked for changes).
+     */
+    private long lastLoadTime;
+
+    /**
+     * Fingerprints of the basenames as of the last load, if the {@link MessageProvider} is a
+     * {@link FingerprintingMessageProvider}.
+     */
+    private Map<String, String> fingerprints = Collections.emptyMap();
+
+    /**
+     * Watermark of the last load, if the {@link MessageProvider} is a {@link DeltaMessageProvider}.
+     */
+    private long watermark;
+
+    private final Object initializationMonitor = new Object();
+    private final InitializationStatistics initializationStatistics = new InitializationStatistics();
+
+    /**
+     * Property that indicates if messages are compiled to {@link MessageFormat}s on first use (=true) or during
+     * initialization (=false).
+     */
+    private boolean lazyFormatCompilation = false;
+
+    /**
+     * Maximum number of {@link MessageFormat}s kept if they are compiled on first use.
+     */
+    private int formatCacheSize = 10000;
+
+    private final CacheStatistics formatCacheStatistics = new CacheStatistics();
+
+    private volatile BoundedConcurrentCache<CachedMessage, MessageFormat> formatCache =
+        new BoundedConcurrentCache<CachedMessage, MessageFormat>(formatCacheSize, formatCacheStatistics);
+    private final CacheStatistics resolvingPathStatistics = new CacheStatistics();
+    private final CacheStatistics lookupStatistics = new CacheStatistics();
+
+    /**
+     * Property that indicates if messages are read on demand from a {@link LookupMessageProvider} (=true) or all at
+     * once during initialization (=false).
+     */
+    private boolean lazyLookup = false;
 
+    /**
+     * Maximum number of message-codes whose messages are kept if messages are read on demand.
+     */
+    private int messageCacheSize = 10000;
+
+    /**
+     * Property that indicates if reading a message on demand reads all codes with the same prefix as well.
+     */
+    private boolean prefetchSiblingCodes = false;
+
+    /**
+     * Maximum number of messages read at once when prefetching the codes with the same prefix.
+     */
+    private int maxPrefetchedMessages = 1000;
+
+    private final CacheStatistics messageCacheStatistics = new CacheStatistics();
+
+    /**
+     * Resolves messages if they are read on demand, null otherwise.
+     */
+    private volatile MessageLookup lookup;
 
     /**
-     * Reads all messages from the {@link MessageProvider} for the given Basename.
+     * Initializes messages by retrieving them from the set {@link MessageProvider}. This also leads to a reset of the
+     * resolving-paths used to cache lookup-paths for messages. The new messages are built completely before they
+     * replace the current ones, so messages can be resolved concurrently while this runs. If an initializationExecutor
+     * is set, the basenames are initialized in parallel using it.
      *
-     * @param  basename  the basename to initialize messages for
+     * @throws  MessageInitializationException  if several basenames fail, holding the errors of all of them
      */
-    protected void initialize(String basename) {
+    public void initialize() {
+
+        synchronized (initializationMonitor) {
+            long start = System.currentTimeMillis();
 
-        initializeMessages(basename);
+            try {
+                initializeSnapshot();
+                initializationStatistics.recordSuccess(System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                initializationStatistics.recordFailure(System.currentTimeMillis() - start, e);
+                throw e;
+            }
+        }
     }
 
-    protected void initializeMessages(String basename) throws RuntimeException {
 
-        Messages messagesForBasename = messageProvider.getMessages(basename);
+    private void initializeSnapshot() {
 
-        for (Locale locale : messagesForBasename.getLocales()) {
-            Map<String, String> codeToMessage = messagesForBasename.getMessages(locale);
+        if (lazyLookup) {
+            initializeLookup();
 
-            for (String code : codeToMessage.keySet()) {
-                try {
-                    String message = codeToMessage.get(code);
-                    addMessage(basename, locale, code, createMessageFormat(message != null ? message : "", locale));
-                } catch (RuntimeException e) {
-                    throw new MessageInitializationException(String.format(
-                            "Error processing Message code=%s locale=%s basename=%s, %s", code, locale, basename,
-                            e.getMessage()), e);
-                }
-            }
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, String> newFingerprints = getFingerprints();
+        DeltaMessageProvider deltaProvider = getDeltaMessageProvider();
+        long newWatermark = deltaProvider != null ? deltaProvider.getWatermark() : 0;
+        List<String> basenamesToLoad = new ArrayList<String>();
+        Map<String, Messages> provided = null;
+
+        if (basenameRestriction) {
+            basenamesToLoad.addAll(basenames);
+        } else if (messageProvider instanceof BulkMessageProvider) {
+            provided = ((BulkMessageProvider) messageProvider).getAllMessages();
+            basenamesToLoad.addAll(provided.keySet());
+        } else {
+            basenamesToLoad.addAll(messageProvider.getAvailableBaseNames());
         }
+
+        List<Map<Locale, Map<String, CachedMessage>>> messages = loadMessages(basenamesToLoad, provided);
+
+        formatCache = new BoundedConcurrentCache<CachedMessage, MessageFormat>(formatCacheSize,
+                formatCacheStatistics);
+        publish(basenamesToLoad, messages);
+        lookup = null;
+        lastLoadTime = start;
+        fingerprints = newFingerprints;
+        watermark = newWatermark;
     }
 
 
-    private void addMessage(String basename, Locale locale, String code, MessageFormat messageFormat) {
+    private void initializeLookup() {
 
-        String localeString = basename + "_" + (locale != null ? locale.toString() : "");
-        Map<String, MessageFormat> codeMap = messages.get(localeString);
+        Assert.isInstanceOf(LookupMessageProvider.class, messageProvider,
+            "Reading messages on demand requires a LookupMessageProvider");
 
-        if (codeMap == null) {
-            codeMap = new HashMap<String, MessageFormat>();
-            messages.put(localeString, codeMap);
+        long start = System.currentTimeMillis();
+        List<String> basenamesToLookup = new ArrayList<String>();
+
+        if (basenameRestriction) {
+            basenamesToLookup.addAll(basenames);
+        } else {
+            basenamesToLookup.addAll(messageProvider.getAvailableBaseNames());
         }
 
-        codeMap.put(code, messageFormat);
+        formatCache = new BoundedConcurrentCache<CachedMessage, MessageFormat>(formatCacheSize,
+                formatCacheStatistics);
+        lookup = new MessageLookup((LookupMessageProvider) messageProvider, basenamesToLookup, getDefaultLocale(),
+                new BoundedConcurrentCache<String, List<Map<Locale, CachedMessage>>>(messageCacheSize,
+                    messageCacheStatistics), prefetchSiblingCodes, maxPrefetchedMessages);
+        lastLoadTime = start;
     }
 
 
-    /*
-     * (non-Javadoc)
+    /**
+     * Reloads the messages of the given basename from the {@link MessageProvider} while keeping the messages of all
+     * other basenames. A basename that is not yet known is added (after all others) unless basenames are restricted
+     * to the ones set explicitly.
      *
-     * @see org.springframework.context.support.AbstractMessageSource#resolveCode(java.lang.String, java.util.Locale)
+     * @param  basename  the basename to reload
      */
-    @Override
-    protected MessageFormat resolveCode(String code, Locale locale) {
+    public void reload(String basename) {
 
-        for (String basename : basenames) {
-            List<String> paths = getPath(locale);
-            for (String loc : paths) {
-                Map<String, MessageFormat> formatMap = messages.get(basename + loc);
-                if (formatMap != null) {
-                    MessageFormat format = formatMap.get(code);
-                    if (format != null) {
-                    	if(format.getLocale()==null){
-                            format.setLocale(defaultLocale);
-                          }
-                        return format;
+        reload(Collections.singletonList(basename), Collections.<String>emptyList(), null);
+    }
+
+
+    /**
+     * Reloads the messages that changed since the last load. If the {@link MessageProvider} is a
+     * {@link DeltaMessageProvider} supporting changes, only the changed messages are read and applied to the current
+     * messages. If it is a {@link FingerprintingMessageProvider}, changed basenames are detected by comparing
+     * fingerprints, and basenames that no longer exist are removed. Otherwise the {@link MessageProvider} has to be a
+     * {@link ChangeAwareMessageProvider}, which reports the changed basenames itself; basenames that no longer exist
+     * at all are then only removed by {@link #initialize()}. If messages are read on demand, all cached messages are
+     * dropped instead.
+     */
+    public void reloadChanged() {
+
+        if (lazyLookup) {
+            initialize();
+
+            return;
+        }
+
+        DeltaMessageProvider deltaProvider = getDeltaMessageProvider();
+
+        Assert.isTrue(deltaProvider != null || messageProvider instanceof FingerprintingMessageProvider
+            || messageProvider instanceof ChangeAwareMessageProvider,
+            "Reloading changed basenames requires a DeltaMessageProvider, FingerprintingMessageProvider or "
+            + "ChangeAwareMessageProvider");
+
+        synchronized (initializationMonitor) {
+            long start = System.currentTimeMillis();
+
+            if (deltaProvider != null) {
+                reload(deltaProvider.getMessageDelta(watermark));
+            } else if (messageProvider instanceof FingerprintingMessageProvider) {
+                Map<String, String> newFingerprints = getFingerprints();
+                List<String> changed = new ArrayList<String>();
+                List<String> removed = new ArrayList<String>();
+
+                for (Map.Entry<String, String> entry : newFingerprints.entrySet()) {
+                    if (!entry.getValue().equals(fingerprints.get(entry.getKey()))) {
+                        changed.add(entry.getKey());
+                    }
+                }
+
+                for (String basename : fingerprints.keySet()) {
+                    if (!newFingerprints.containsKey(basename)) {
+                        // explicitly set basenames are kept (without messages)
+                        if (basenameRestriction) {
+                            changed.add(basename);
+                        } else {
+                            removed.add(basename);
+                        }
                     }
                 }
+
+                reload(changed, removed, newFingerprints);
+            } else {
+                reload(((ChangeAwareMessageProvider) messageProvider).getChangedBaseNames(lastLoadTime),
+                    Collections.<String>emptyList(), null);
             }
-        }
 
-        if (getReturnUnresolvedCode()) {
-            return createMessageFormat(code, locale);
-        } else {
-            return null;
+            lastLoadTime = start;
         }
     }
 
 
-    private List<String> getPath(Locale locale) {
+    /**
+     * Applies the given changes to the current messages. Nothing is published if all changes are applied already
+     * (like the ones read again within the lag of the watermark).
+     */
+    private void reload(MessageDelta delta) {
+
+        long start = System.currentTimeMillis();
 
-        List<String> path = resolvingPath.get(locale);
-        if (path == null) {
-            path = new ArrayList<String>();
+        try {
+            MessageSnapshot current = snapshot;
+            List<String> newBasenames = new ArrayList<String>(current.getBasenames());
+            List<Map<Locale, Map<String, CachedMessage>>> newMessages =
+                new ArrayList<Map<Locale, Map<String, CachedMessage>>>(current.getMessages());
+            boolean modified = false;
 
-            List<Locale> localePath = LocaleUtils.getPath(locale, getDefaultLocale());
-            for (Locale loc : localePath) {
-                if (loc == null) {
-                    path.add("_");
-                } else {
+            for (String basename : delta.getBasenames()) {
+                int index = newBasenames.indexOf(basename);
 
-                    String language = LocaleUtils.getLanguage(loc);
-                    String country = LocaleUtils.getCountry(loc);
-                    String variant = LocaleUtils.getVariant(loc);
-                    if (!variant.isEmpty()) {
-                        path.add(String.format("_%s_%s_%s", language, country, variant));
-                    } else if (!country.isEmpty()) {
-                        path.add(String.format("_%s_%s", language, country));
-                    } else if (!language.isEmpty()) {
-                        path.add(String.format("_%s", language));
-                    }
+                if (index < 0 && basenameRestriction) {
+                    continue;
                 }
 
+                Map<Locale, Map<String, CachedMessage>> messages =
+                    index >= 0 ? newMessages.get(index) : new HashMap<Locale, Map<String, CachedMessage>>();
+                Messages changed = delta.getChangedMessages(basename);
+                Messages removed = delta.getRemovedMessages(basename);
+
+                if (isApplied(messages, changed, removed)) {
+                    continue;
+                }
+
+                if (index < 0) {
+                    newBasenames.add(basename);
+                    newMessages.add(applyDelta(messages, basename, changed, removed));
+                } else {
+                    newMessages.set(index, applyDelta(messages, basename, changed, removed));
+                }
+
+                modified = true;
+            }
+
+            if (modified) {
+                publish(newBasenames, newMessages);
             }
 
-            resolvingPath.put(locale, path);
+            watermark = delta.getWatermark();
+            initializationStatistics.recordSuccess(System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            initializationStatistics.recordFailure(System.currentTimeMillis() - start, e);
+            throw e;
         }
-        return path;
     }
 
 
-    public Locale getDefaultLocale() {
+    /**
+     * Returns whether the given messages of a basename contain all the changed messages (with the same definition)
+     * and none of the removed ones.
+     */
+    private boolean isApplied(Map<Locale, Map<String, CachedMessage>> messages, Messages changed, Messages removed) {
 
-        return defaultLocale;
+        for (Locale locale : changed.getLocales()) {
+            Map<String, CachedMessage> codeMap = messages.get(toKey(locale));
+
+            for (Map.Entry<String, String> entry : changed.getMessages(locale).entrySet()) {
+                CachedMessage message = codeMap != null ? codeMap.get(entry.getKey()) : null;
+                String definition = entry.getValue() != null ? entry.getValue() : "";
+
+                if (message == null || !message.getMessage().equals(definition)) {
+                    return false;
+                }
+            }
+        }
+
+        for (Locale locale : removed.getLocales()) {
+            Map<String, CachedMessage> codeMap = messages.get(toKey(locale));
+
+            if (codeMap != null && !Collections.disjoint(codeMap.keySet(), removed.getMessages(locale).keySet())) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
 
     /**
-     * Sets the default {@link Locale} used during message-resolving. If for a given Locale the message is not found the
-     * message gets looked up for the default-locale. If the message is not found then the "base-message" is used. This
-     * is allowed to be null which then means "no default locale"
-     *
-     * @param  defaultLocale  the Locale to use as default or null if no default-locale should be used
+     * Returns the {@link MessageProvider} as {@link DeltaMessageProvider} if it is one and supports changes in its
+     * current configuration, null otherwise.
      */
-    public void setDefaultLocale(Locale defaultLocale) {
+    private DeltaMessageProvider getDeltaMessageProvider() {
 
-        this.defaultLocale = defaultLocale;
+        if (messageProvider instanceof DeltaMessageProvider
+                && ((DeltaMessageProvider) messageProvider).supportsDelta()) {
+            return (DeltaMessageProvider) messageProvider;
+        }
+
+        return null;
+    }
+
+
+    private Map<String, String> getFingerprints() {
+
+        if (messageProvider instanceof FingerprintingMessageProvider) {
+            return ((FingerprintingMessageProvider) messageProvider).getFingerprints();
+        }
+
+        return Collections.emptyMap();
     }
 
 
     /**
-     * Sets the {@link MessageProvider} for this which is asked for all its Messages during initialisation.
-     *
-     * @param  messageProvider  the {@link MessageProvider} to use
+     * Reloads and removes the given basenames. Afterwards the fingerprints of these basenames are the given ones (or
+     * the ones read before loading if null). The watermark is only advanced if all basenames were reloaded, since the
+     * changes of the others have not been read yet.
      */
-    public void setMessageProvider(MessageProvider messageProvider) {
+    private void reload(Collection<String> basenamesToReload, Collection<String> basenamesToRemove,
+        Map<String, String> newFingerprints) {
 
-        Assert.notNull(messageProvider);
+        // cached messages cannot be dropped per basename, so all of them are
+        if (lazyLookup) {
+            initialize();
 
-        this.messageProvider = messageProvider;
+            return;
+        }
+
+        synchronized (initializationMonitor) {
+            long start = System.currentTimeMillis();
+
+            try {
+                // taken before loading, so changes while loading are detected next time
+                Map<String, String> loadedFingerprints = newFingerprints != null ? newFingerprints : getFingerprints();
+                DeltaMessageProvider deltaProvider = getDeltaMessageProvider();
+                long newWatermark = deltaProvider != null ? deltaProvider.getWatermark() : 0;
+
+                MessageSnapshot current = snapshot;
+                List<String> newBasenames = new ArrayList<String>(current.getBasenames());
+                List<Map<Locale, Map<String, CachedMessage>>> newMessages =
+                    new ArrayList<Map<Locale, Map<String, CachedMessage>>>(current.getMessages());
+
+                for (String basename : basenamesToRemove) {
+                    int index = newBasenames.indexOf(basename);
+
+                    if (index >= 0) {
+                        newBasenames.remove(index);
+                        newMessages.remove(index);
+                    }
+                }
+
+                List<String> basenamesToLoad = new ArrayList<String>();
+
+                for (String basename : basenamesToReload) {
+                    if (newBasenames.contains(basename) || !basenameRestriction) {
+                        basenamesToLoad.add(basename);
+                    }
+                }
+
+                List<Map<Locale, Map<String, CachedMessage>>> loaded = loadMessages(basenamesToLoad, null);
+
+                for (int i = 0; i < basenamesToLoad.size(); i++) {
+                    int index = newBasenames.indexOf(basenamesToLoad.get(i));
+
+                    if (index < 0) {
+                        newBasenames.add(basenamesToLoad.get(i));
+                        newMessages.add(loaded.get(i));
+                    } else {
+                        newMessages.set(index, loaded.get(i));
+                    }
+                }
+
+                // the format cache is kept: its entries of unchanged basenames are still valid
+                publish(newBasenames, newMessages);
+                updateFingerprints(loadedFingerprints, basenamesToLoad, basenamesToRemove);
+
+                if (deltaProvider != null && basenamesToLoad.containsAll(newBasenames)) {
+                    watermark = newWatermark;
+                }
+
+                initializationStatistics.recordSuccess(System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                initializationStatistics.recordFailure(System.currentTimeMillis() - start, e);
+                throw e;
+            }
+        }
     }
 
 
     /**
-     * Sets a single basename for this. This cannot be used in combination with {@link #setBasenames(List)}. If neither
-     * {@link #setBasename(String)} nor {@link #setBasenames(List)} is called the basenames are looked up from the
-     * {@link MessageProvider}
-     *
-     * @param  basename  the single basename to use for this instance
+     * Takes the given fingerprints of the reloaded basenames and drops the ones of removed basenames.
      */
-    public void setBasename(String basename) {
+    private void updateFingerprints(Map<String, String> newFingerprints, Collection<String> reloaded,
+        Collection<String> removed) {
 
-        basenameRestriction = true;
-        this.basenames = new ArrayList<String>();
-        basenames.add(basename);
+        Map<String, String> updated = new HashMap<String, String>(fingerprints);
+        updated.keySet().removeAll(removed);
+
+        for (String basename : reloaded) {
+            String fingerprint = newFingerprints.get(basename);
+
+            if (fingerprint != null) {
+                updated.put(basename, fingerprint);
+            } else {
+                updated.remove(basename);
+            }
+        }
+
+        fingerprints = updated;
+    }
+
+
+    private void publish(List<String> basenames, List<Map<Locale, Map<String, CachedMessage>>> messages) {
+
+        snapshot = new MessageSnapshot(basenames, messages, getDefaultLocale(),
+                new BoundedConcurrentCache<Locale, Map<String, CachedMessage>>(resolvingPathCacheSize,
+                    resolvingPathStatistics));
     }
 
 
     /**
-     * Sets a {@link List} of basenames to use for this instance. This cannot be used in combination with
-     * {@link #setBasename(String)}. If neither {@link #setBasename(String)} nor {@link #setBasenames(List)} is called
-     * the basenames are looked up from the {@link MessageProvider}
+     * Loads and compiles the messages of the given basenames, in parallel if an initializationExecutor is set. If the
+     * {@link MessageProvider} is a {@link BulkMessageProvider}, the messages of several basenames are read at once and
+     * only compiled per basename.
      *
-     * @param  basenames  the {@link List} of basenames
+     * @param  provided  the messages already read for the basenames or null to read them
+     *
+     * @return  the messages of each basename, in the order of the given basenames
      */
-    public void setBasenames(List<String> basenames) {
+    private List<Map<Locale, Map<String, CachedMessage>>> loadMessages(List<String> basenamesToLoad,
+        Map<String, Messages> provided) {
 
-        Assert.notNull(basenames);
+        if (provided == null && basenamesToLoad.size() > 1 && messageProvider instanceof BulkMessageProvider) {
+            provided = ((BulkMessageProvider) messageProvider).getMessages(basenamesToLoad);
+        }
 
-        if (!basenames.isEmpty()) {
-            basenameRestriction = true;
-            this.basenames = basenames;
+        final Map<String, Messages> providedMessages = provided;
+        List<FutureTask<Map<Locale, Map<String, CachedMessage>>>> tasks =
+            new ArrayList<FutureTask<Map<Locale, Map<String, CachedMessage>>>>(basenamesToLoad.size());
+
+        for (final String basename : basenamesToLoad) {
+            FutureTask<Map<Locale, Map<String, CachedMessage>>> task =
+                new FutureTask<Map<Locale, Map<String, CachedMessage>>>(
+                    new Callable<Map<Locale, Map<String, CachedMessage>>>() {
+
+                        public Map<Locale, Map<String, CachedMessage>> call() {
+
+                            if (providedMessages == null) {
+                                return initialize(basename);
+                            }
+
+                            Messages messages = providedMessages.get(basename);
+
+                            return compileMessages(basename, messages != null ? messages : new Messages());
+                        }
+                    });
+
+            if (initializationExecutor != null) {
+                initializationExecutor.execute(task);
+            } else {
+                task.run();
+            }
+
+            tasks.add(task);
         }
+
+        return collectMessages(basenamesToLoad, tasks);
     }
 
 
     /**
-     * Callback to call {@link #initialize()} after construction of this using a Spring-Callback.
+     * Waits for the messages of all basenames (in the order of the basenames) and collects errors of all basenames.
      */
-    public void afterPropertiesSet() throws Exception {
+    private List<Map<Locale, Map<String, CachedMessage>>> collectMessages(List<String> basenames,
+        List<FutureTask<Map<Locale, Map<String, CachedMessage>>>> tasks) {
+
+        List<Map<Locale, Map<String, CachedMessage>>> messages =
+            new ArrayList<Map<Locale, Map<String, CachedMessage>>>(tasks.size());
+        List<RuntimeException> errors = new ArrayList<RuntimeException>();
+
+        for (FutureTask<Map<Locale, Map<String, CachedMessage>>> task : tasks) {
+            try {
+                messages.add(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while initializing messages", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
 
-        if (autoInitialize) {
-            initialize();
+                errors.add(cause instanceof RuntimeException ? (RuntimeException) cause
+                                                             : new IllegalStateException(cause));
+            }
+        }
+
+        if (errors.size() == 1) {
+            throw errors.get(0);
+        } else if (!errors.isEmpty()) {
+            StringBuilder message = new StringBuilder("Error initializing Messages of basenames " + basenames + ":");
+
+            for (RuntimeException error : errors) {
+                message.append(String.format("%n%s", error.getMessage()));
+            }
+
+            throw new MessageInitializationException(message.toString(), errors);
         }
 
+        return messages;
     }
 
 
     /**
-     * Sets the.
+     * Compiles all currently initialized messages to {@link MessageFormat}s to check that they are valid. This is meant
+     * to be used with lazyFormatCompilation (e.g. within a test), where invalid messages would otherwise only be
+     * detected on first use.
      *
-     * @param  autoInitialize
+     * @throws  MessageInitializationException  if messages cannot be compiled, holding all errors
      */
-    public void setAutoInitialize(boolean autoInitialize) {
+    public void validateMessages() {
+
+        MessageSnapshot current = snapshot;
+        StringBuilder message = new StringBuilder("Error validating Messages:");
+        List<RuntimeException> errors = new ArrayList<RuntimeException>();
+
+        for (int i = 0; i < current.getBasenames().size(); i++) {
+            String basename = current.getBasenames().get(i);
+
+            for (Map.Entry<Locale, Map<String, CachedMessage>> localeMessages : current.getMessages().get(i)
+                    .entrySet()) {
+                for (Map.Entry<String, CachedMessage> entry : localeMessages.getValue().entrySet()) {
+                    try {
+                        CachedMessage cachedMessage = entry.getValue();
+                        createMessageFormat(cachedMessage.getMessage(), cachedMessage.getLocale());
+                    } catch (RuntimeException e) {
+                        errors.add(e);
+                        message.append(String.format("%nInvalid Message code=%s locale=%s basename=%s, %s",
+                                entry.getKey(), localeMessages.getKey(), basename, e.getMessage()));
+                    }
+                }
+            }
+        }
 
-        this.autoInitialize = autoInitialize;
+        if (!errors.isEmpty()) {
+            throw new MessageInitializationException(message.toString(), errors);
+        }
     }
 
 
     /**
-     * @return  <br>
-     *          Default value is false.If message could not be resolved returns null<br>
-     *          if set to true- will return message code if the message could not be resolved
+     * Reads all messages from the {@link MessageProvider} for the given Basename. This is not used for basenames read
+     * at once from a {@link BulkMessageProvider}. Before 0.8 this returned nothing and added the messages to the
+     * (removed) messages field, overriding implementations have to return them now.
+     *
+     * @param  basename  the basename to initialize messages for
+     *
+     * @return  the compiled messages of the basename by {@link Locale} (null for default) and message-code
      */
-    public Boolean getReturnUnresolvedCode() {
+    protected Map<Locale, Map<String, CachedMessage>> initialize(String basename) {
 
-        return this.returnUnresolvedCode;
+        return initializeMessages(basename);
     }
 
 
-    /**
-     * @param  returnUnresolvedCode  -<br>
-     *                               Default value is false.If message could not be resolved returns null<br>
-     *                               if set to true- will return message code if the message could not be resolved
-     */
+    protected Map<Locale, Map<String, CachedMessage>> initializeMessages(String basename) throws RuntimeException {
+
+        return compileMessages(basename, messageProvider.getMessages(basename));
+    }
+
+
+    private Map<Locale, Map<String, CachedMessage>> compileMessages(String basename, Messages messagesForBasename) {
+
+        Map<Locale, Map<String, CachedMessage>> messages = new HashMap<Locale, Map<String, CachedMessage>>();
+
+        addMessages(messages, basename, messagesForBasename);
+
+        return messages;
+    }
+
+
+    /**
+     * Compiles the given messages and adds them to the given (not yet published) messages of the basename.
+     */
+    private void addMessages(Map<Locale, Map<String, CachedMessage>> messages, String basename,
+        Messages messagesForBasename) {
+
+        for (Locale locale : messagesForBasename.getLocales()) {
+            Map<String, String> codeToMessage = messagesForBasename.getMessages(locale);
+
+            // messages without locale are formatted using the default locale
+            Locale formatLocale = locale != null ? locale : getDefaultLocale();
+
+            for (String code : codeToMessage.keySet()) {
+                try {
+                    String message = codeToMessage.get(code);
+                    message = message != null ? message : "";
+
+                    MessageFormat format = lazyFormatCompilation ? null : createMessageFormat(message, formatLocale);
+                    addMessage(messages, locale, code, new CachedMessage(message, formatLocale, format));
+                } catch (RuntimeException e) {
+                    throw new MessageInitializationException(String.format(
+                            "Error processing Message code=%s locale=%s basename=%s, %s", code, locale, basename,
+                            e.getMessage()), e);
+                }
+            }
+        }
+    }
+
+
+    private void addMessage(Map<Locale, Map<String, CachedMessage>> messages, Locale locale, String code,
+        CachedMessage message) {
+
+        Locale key = toKey(locale);
+        Map<String, CachedMessage> codeMap = messages.get(key);
+
+        if (codeMap == null) {
+            codeMap = new HashMap<String, CachedMessage>();
+            messages.put(key, codeMap);
+        }
+
+        codeMap.put(code, message);
+    }
+
+
+    /**
+     * Returns the {@link Locale} messages are stored with: an empty locale is the same as no locale.
+     */
+    private Locale toKey(Locale locale) {
+
+        return locale != null && locale.toString().length() > 0 ? locale : null;
+    }
+
+
+    /**
+     * Applies the given changes to the messages of a basename. The given messages are not modified, a modified copy
+     * is returned.
+     */
+    private Map<Locale, Map<String, CachedMessage>> applyDelta(Map<Locale, Map<String, CachedMessage>> messages,
+        String basename, Messages changed, Messages removed) {
+
+        Map<Locale, Map<String, CachedMessage>> result = new HashMap<Locale, Map<String, CachedMessage>>(messages);
+
+        // copy the maps of all locales that are modified
+        Set<Locale> locales = new HashSet<Locale>(changed.getLocales());
+        locales.addAll(removed.getLocales());
+
+        for (Locale locale : locales) {
+            Map<String, CachedMessage> codeMap = messages.get(toKey(locale));
+
+            if (codeMap != null) {
+                result.put(toKey(locale), new HashMap<String, CachedMessage>(codeMap));
+            }
+        }
+
+        for (Locale locale : removed.getLocales()) {
+            Map<String, CachedMessage> codeMap = result.get(toKey(locale));
+
+            if (codeMap != null) {
+                codeMap.keySet().removeAll(removed.getMessages(locale).keySet());
+            }
+        }
+
+        addMessages(result, basename, changed);
+
+        return result;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.springframework.context.support.AbstractMessageSource#resolveCode(java.lang.String, java.util.Locale)
+     */
+    @Override
+    protected MessageFormat resolveCode(String code, Locale locale) {
+
+        CachedMessage message = resolve(code, locale);
+
+        if (message != null) {
+            lookupStatistics.recordHit();
+
+            MessageFormat format = getFormat(message);
+
+            // the caller synchronizes on the returned format, so a copy per thread keeps them from blocking each other
+            return threadConfinedFormats ? message.getThreadFormat(format) : format;
+        }
+
+        lookupStatistics.recordMiss();
+
+        if (getReturnUnresolvedCode()) {
+            return createMessageFormat(code, locale);
+        } else {
+            return null;
+        }
+    }
+
+
+    private CachedMessage resolve(String code, Locale locale) {
+
+        MessageLookup currentLookup = lookup;
+
+        return currentLookup != null ? currentLookup.resolve(code, locale) : snapshot.resolve(code, locale);
+    }
+
+
+    /**
+     * Returns the {@link MessageFormat} of the given message, compiling it if it was not compiled during
+     * initialization.
+     */
+    private MessageFormat getFormat(CachedMessage message) {
+
+        MessageFormat format = message.getFormat();
+
+        if (format != null) {
+            return format;
+        }
+
+        BoundedConcurrentCache<CachedMessage, MessageFormat> cache = formatCache;
+        format = cache.get(message);
+
+        if (format == null) {
+            format = cache.put(message, createMessageFormat(message.getMessage(), message.getLocale()));
+        }
+
+        return format;
+    }
+
+
+    /**
+     * Returns the message formatted without arguments. This is used by {@link AbstractMessageSource} for messages
+     * without arguments unless alwaysUseMessageFormat is set. The formatted message is kept with the message (formatted
+     * during initialization, or on first use if formats are compiled lazily), so these messages are returned without
+     * any formatting, locking or allocation.
+     *
+     * @see  org.springframework.context.support.AbstractMessageSource#resolveCodeWithoutArguments(java.lang.String,
+     *       java.util.Locale)
+     */
+    @Override
+    protected String resolveCodeWithoutArguments(String code, Locale locale) {
+
+        CachedMessage message = resolve(code, locale);
+
+        if (message != null) {
+            lookupStatistics.recordHit();
+
+            String text = message.getText();
+
+            if (text == null) {
+                MessageFormat format = getFormat(message);
+
+                synchronized (format) {
+                    text = format.format(new Object[0]);
+                }
+
+                message.setText(text);
+            }
+
+            return text;
+        }
+
+        lookupStatistics.recordMiss();
+
+        if (getReturnUnresolvedCode()) {
+            return code;
+        } else {
+            return null;
+        }
+    }
+
+
+    public Locale getDefaultLocale() {
+
+        return defaultLocale;
+    }
+
+
+    /**
+     * Sets the default {@link Locale} used during message-resolving. If for a given Locale the message is not found the
+     * message gets looked up for the default-locale. If the message is not found then the "base-message" is used. This
+     * is allowed to be null which then means "no default locale". Changes take effect on the next
+     * {@link #initialize()}.
+     *
+     * @param  defaultLocale  the Locale to use as default or null if no default-locale should be used
+     */
+    public void setDefaultLocale(Locale defaultLocale) {
+
+        this.defaultLocale = defaultLocale;
+    }
+
+
+    /**
+     * Sets the {@link MessageProvider} for this which is asked for all its Messages during initialisation.
+     *
+     * @param  messageProvider  the {@link MessageProvider} to use
+     */
+    public void setMessageProvider(MessageProvider messageProvider) {
+
+        Assert.notNull(messageProvider);
+
+        this.messageProvider = messageProvider;
+    }
+
+
+    /**
+     * Sets a single basename for this. This cannot be used in combination with {@link #setBasenames(List)}. If neither
+     * {@link #setBasename(String)} nor {@link #setBasenames(List)} is called the basenames are looked up from the
+     * {@link MessageProvider}
+     *
+     * @param  basename  the single basename to use for this instance
+     */
+    public void setBasename(String basename) {
+
+        basenameRestriction = true;
+        this.basenames = new ArrayList<String>();
+        basenames.add(basename);
+    }
+
+
+    /**
+     * Sets a {@link List} of basenames to use for this instance. This cannot be used in combination with
+     * {@link #setBasename(String)}. If neither {@link #setBasename(String)} nor {@link #setBasenames(List)} is called
+     * the basenames are looked up from the {@link MessageProvider}
+     *
+     * @param  basenames  the {@link List} of basenames
+     */
+    public void setBasenames(List<String> basenames) {
+
+        Assert.notNull(basenames);
+
+        if (!basenames.isEmpty()) {
+            basenameRestriction = true;
+            this.basenames = basenames;
+        }
+    }
+
+
+    /**
+     * Callback to call {@link #initialize()} after construction of this using a Spring-Callback. This also starts
+     * refreshing in the background if a refreshInterval is set and reloading on changes if reloadOnChange is set.
+     */
+    public void afterPropertiesSet() throws Exception {
+
+        if (autoInitialize) {
+            initialize();
+        }
+
+        if (refreshInterval > 0) {
+            startRefreshing();
+        }
+
+        if (reloadOnChange) {
+            startReloadingOnChange();
+        }
+    }
+
+
+    /**
+     * Callback to stop refreshing and reloading on changes on destruction of this using a Spring-Callback.
+     */
+    public void destroy() {
+
+        stopRefreshing();
+        stopReloadingOnChange();
+    }
+
+
+    /**
+     * Registers this at the {@link ObservableMessageProvider}, so basenames are reloaded (see {@link #reload(String)})
+     * as soon as it reports changes of them. Basenames reported that no longer exist are removed unless basenames are
+     * restricted to the ones set explicitly. Does nothing if already registered.
+     */
+    public synchronized void startReloadingOnChange() {
+
+        Assert.isInstanceOf(ObservableMessageProvider.class, messageProvider,
+            "Reloading on changes requires an ObservableMessageProvider");
+
+        if (changeListener != null) {
+            return;
+        }
+
+        changeListener = new MessageChangeListener() {
+
+                public void messagesChanged(Collection<String> basenames) {
+
+                    reloadReported(basenames);
+                }
+            };
+        ((ObservableMessageProvider) messageProvider).addMessageChangeListener(changeListener);
+    }
+
+
+    /**
+     * Stops reloading basenames on changes reported by the {@link ObservableMessageProvider}.
+     */
+    public synchronized void stopReloadingOnChange() {
+
+        if (changeListener != null) {
+            ((ObservableMessageProvider) messageProvider).removeMessageChangeListener(changeListener);
+            changeListener = null;
+        }
+    }
+
+
+    private void reloadReported(Collection<String> basenames) {
+
+        Collection<String> available = messageProvider.getAvailableBaseNames();
+        List<String> changed = new ArrayList<String>();
+        List<String> removed = new ArrayList<String>();
+
+        for (String basename : basenames) {
+            // explicitly set basenames are kept (without messages)
+            if (available.contains(basename) || basenameRestriction) {
+                changed.add(basename);
+            } else {
+                removed.add(basename);
+            }
+        }
+
+        reload(changed, removed, null);
+    }
+
+
+    /**
+     * Starts calling {@link #initialize()} (or {@link #reloadChanged()} if incrementalRefresh is set) in a background
+     * thread every refreshInterval milliseconds. Messages keep
+     * being resolved from the current messages while a refresh runs. If a refresh fails, the current messages are kept
+     * and the next attempts are delayed exponentially (up to maxRefreshBackoff). Does nothing if already refreshing.
+     */
+    public synchronized void startRefreshing() {
+
+        Assert.isTrue(refreshInterval > 0, "refreshInterval must be set to refresh messages");
+
+        if (refreshScheduler != null) {
+            return;
+        }
+
+        refreshScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                    public Thread newThread(Runnable runnable) {
+
+                        Thread thread = new Thread(runnable, "InitializableMessageSource-refresh");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+        scheduleRefresh(refreshScheduler, refreshInterval, 0);
+    }
+
+
+    /**
+     * Stops refreshing in the background. A refresh currently running is completed.
+     */
+    public synchronized void stopRefreshing() {
+
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdown();
+            refreshScheduler = null;
+        }
+    }
+
+
+    private void scheduleRefresh(final ScheduledExecutorService scheduler, long delay, final int failures) {
+
+        try {
+            scheduler.schedule(new Runnable() {
+
+                    public void run() {
+
+                        refresh(scheduler, failures);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // refreshing was stopped in the meantime
+        }
+    }
+
+
+    private void refresh(ScheduledExecutorService scheduler, int failures) {
+
+        try {
+            if (incrementalRefresh) {
+                reloadChanged();
+            } else {
+                initialize();
+            }
+
+            scheduleRefresh(scheduler, refreshInterval, 0);
+        } catch (RuntimeException e) {
+            // double the delay on each failure in a row, but do not wait longer than maxRefreshBackoff
+            long delay = Math.min(refreshInterval << Math.min(failures + 1, 30), maxRefreshBackoff);
+            delay = Math.max(delay, refreshInterval);
+
+            logger.warn("Refreshing messages failed, keeping the current messages. Retrying in " + delay + "ms", e);
+            scheduleRefresh(scheduler, delay, failures + 1);
+        }
+    }
+
+
+    /**
+     * Sets the.
+     *
+     * @param  autoInitialize
+     */
+    public void setAutoInitialize(boolean autoInitialize) {
+
+        this.autoInitialize = autoInitialize;
+    }
+
+
+    /**
+     * @return  <br>
+     *          Default value is false.If message could not be resolved returns null<br>
+     *          if set to true- will return message code if the message could not be resolved
+     */
+    public Boolean getReturnUnresolvedCode() {
+
+        return this.returnUnresolvedCode;
+    }
+
+
+    /**
+     * @param  returnUnresolvedCode  -<br>
+     *                               Default value is false.If message could not be resolved returns null<br>
+     *                               if set to true- will return message code if the message could not be resolved
+     */
     public void setReturnUnresolvedCode(Boolean returnUnresolvedCode) {
 
         this.returnUnresolvedCode = returnUnresolvedCode;
     }
+
+
+    /**
+     * Sets the maximum number of {@link Locale}s whose resolving-path is cached (defaults to 256). If more different
+     * {@link Locale}s are requested the ones used least recently are evicted. Changes take effect on the next
+     * {@link #initialize()}.
+     *
+     * @param  resolvingPathCacheSize  the maximum number of cached resolving-paths, must be positive
+     */
+    public void setResolvingPathCacheSize(int resolvingPathCacheSize) {
+
+        Assert.isTrue(resolvingPathCacheSize > 0, "resolvingPathCacheSize must be positive");
+
+        this.resolvingPathCacheSize = resolvingPathCacheSize;
+    }
+
+
+    /**
+     * Returns the hits, misses and evictions of the cache of resolving-paths, accumulated over all initializations.
+     *
+     * @return  the statistics of the resolving-path cache
+     */
+    public CacheStatistics getResolvingPathStatistics() {
+
+        return resolvingPathStatistics;
+    }
+
+
+    /**
+     * Returns how many message-lookups could (hits) and could not (misses) be resolved from the messages of this,
+     * accumulated over all initializations.
+     *
+     * @return  the statistics of message-lookups
+     */
+    public CacheStatistics getLookupStatistics() {
+
+        return lookupStatistics;
+    }
+
+
+    /**
+     * Sets whether each thread resolves its own copy of the cached {@link MessageFormat}s (defaults to false).
+     * {@link AbstractMessageSource} synchronizes on the {@link MessageFormat} while formatting, so with the shared
+     * instances threads formatting the same message wait for each other. The copies are made once per thread and
+     * message (and dropped with the messages on reload), so threads format the same message in parallel without any
+     * allocation per resolve, at the cost of a copy per thread of each message they format.
+     *
+     * @param  threadConfinedFormats  true to hand out a copy per thread, false to hand out the shared instances
+     */
+    public void setThreadConfinedFormats(boolean threadConfinedFormats) {
+
+        this.threadConfinedFormats = threadConfinedFormats;
+    }
+
+
+    /**
+     * Sets whether messages are compiled to {@link MessageFormat}s on first use instead of during initialization
+     * (defaults to false). Compiling lazily makes initialization faster and keeps only the {@link MessageFormat}s of
+     * recently used messages (see {@link #setFormatCacheSize(int)}) instead of all of them. Invalid messages are then
+     * only detected on first use, use {@link #validateMessages()} to check them up front. Changes take effect on the
+     * next {@link #initialize()}.
+     *
+     * @param  lazyFormatCompilation  true to compile messages on first use
+     */
+    public void setLazyFormatCompilation(boolean lazyFormatCompilation) {
+
+        this.lazyFormatCompilation = lazyFormatCompilation;
+    }
+
+
+    /**
+     * Sets the maximum number of {@link MessageFormat}s kept if they are compiled on first use (defaults to 10000).
+     * Changes take effect on the next {@link #initialize()}.
+     *
+     * @param  formatCacheSize  the maximum number of compiled formats to keep, must be positive
+     */
+    public void setFormatCacheSize(int formatCacheSize) {
+
+        Assert.isTrue(formatCacheSize > 0, "formatCacheSize must be positive");
+
+        this.formatCacheSize = formatCacheSize;
+    }
+
+
+    /**
+     * Returns the hits, misses and evictions of the cache of {@link MessageFormat}s compiled on first use,
+     * accumulated over all initializations.
+     *
+     * @return  the statistics of the format cache
+     */
+    public CacheStatistics getFormatCacheStatistics() {
+
+        return formatCacheStatistics;
+    }
+
+
+    /**
+     * Sets whether messages are read on demand (=true) instead of all at once during initialization (=false). This
+     * requires a {@link LookupMessageProvider} and is meant for huge amounts of messages: only the messages of the most
+     * recently used codes (see messageCacheSize) are kept, as well as codes that do not exist. Messages are always
+     * compiled on first use then. Reloading drops all cached messages. Defaults to false.
+     *
+     * @param  lazyLookup  true to read messages on demand
+     */
+    public void setLazyLookup(boolean lazyLookup) {
+
+        this.lazyLookup = lazyLookup;
+    }
+
+
+    /**
+     * Sets the maximum number of message-codes whose messages are kept if messages are read on demand. Defaults to
+     * 10000. Takes effect on the next initialization.
+     *
+     * @param  messageCacheSize  the maximum number of cached codes, must be positive
+     */
+    public void setMessageCacheSize(int messageCacheSize) {
+
+        Assert.isTrue(messageCacheSize > 0, "messageCacheSize must be positive");
+
+        this.messageCacheSize = messageCacheSize;
+    }
+
+
+    /**
+     * Sets whether reading a message on demand also reads all codes sharing the part of its code up to the last dot
+     * (e.g. all codes starting with "user." for "user.name"), so related messages are read with a single call.
+     * Defaults to false.
+     *
+     * @param  prefetchSiblingCodes  true to read codes with the same prefix as well
+     */
+    public void setPrefetchSiblingCodes(boolean prefetchSiblingCodes) {
+
+        this.prefetchSiblingCodes = prefetchSiblingCodes;
+    }
+
+
+    /**
+     * Sets the maximum number of messages (in all basenames and {@link Locale}s) read at once when prefetching the
+     * codes with the same prefix. Prefixes with more messages are read code by code instead. Defaults to 1000. Takes
+     * effect on the next initialization.
+     *
+     * @param  maxPrefetchedMessages  the maximum number of prefetched messages, must be positive
+     */
+    public void setMaxPrefetchedMessages(int maxPrefetchedMessages) {
+
+        Assert.isTrue(maxPrefetchedMessages > 0, "maxPrefetchedMessages must be positive");
+
+        this.maxPrefetchedMessages = maxPrefetchedMessages;
+    }
+
+
+    /**
+     * Returns the statistics of the cache holding the messages read on demand. A hit is a code (found or not) that
+     * did not have to be read from the {@link LookupMessageProvider}.
+     *
+     * @return  the statistics of the message cache
+     */
+    public CacheStatistics getMessageCacheStatistics() {
+
+        return messageCacheStatistics;
+    }
+
+
+    /**
+     * Sets an {@link Executor} used to initialize the basenames in parallel (defaults to null, which initializes them
+     * one after another in the calling thread). Each basename is loaded from the {@link MessageProvider} and compiled
+     * in its own task, so the {@link MessageProvider} must be thread-safe. The result does not depend on the order the
+     * tasks finish in: basenames are always resolved in their configured order. If several basenames fail, the errors
+     * of all of them are reported together.
+     *
+     * @param  initializationExecutor  the {@link Executor} to use or null to initialize sequentially
+     */
+    public void setInitializationExecutor(Executor initializationExecutor) {
+
+        this.initializationExecutor = initializationExecutor;
+    }
+
+
+    /**
+     * Sets the interval in milliseconds to refresh the messages in the background (defaults to 0, which means no
+     * refreshing). Refreshing is started by {@link #afterPropertiesSet()} or {@link #startRefreshing()}.
+     *
+     * @param  refreshInterval  the interval in milliseconds or 0 to not refresh
+     */
+    public void setRefreshInterval(long refreshInterval) {
+
+        Assert.isTrue(refreshInterval >= 0, "refreshInterval must not be negative");
+
+        this.refreshInterval = refreshInterval;
+    }
+
+
+    /**
+     * Sets the maximum delay in milliseconds between refreshes after failures (defaults to 10 minutes). After a
+     * failure the delay is doubled each time until a refresh succeeds again or this maximum is reached.
+     *
+     * @param  maxRefreshBackoff  the maximum delay in milliseconds
+     */
+    public void setMaxRefreshBackoff(long maxRefreshBackoff) {
+
+        this.maxRefreshBackoff = maxRefreshBackoff;
+    }
+
+
+    /**
+     * Returns the number and duration of successful and failed initializations, including refreshes.
+     *
+     * @return  the statistics of initializations
+     */
+    public InitializationStatistics getInitializationStatistics() {
+
+        return initializationStatistics;
+    }
+
+
+    /**
+     * Sets whether background refreshes only reload the basenames that changed (see {@link #reloadChanged()}) instead
+     * of all of them (defaults to false). This requires a {@link DeltaMessageProvider} (supporting changes),
+     * {@link FingerprintingMessageProvider} or {@link ChangeAwareMessageProvider}.
+     *
+     * @param  incrementalRefresh  true to only reload changed basenames when refreshing
+     */
+    public void setIncrementalRefresh(boolean incrementalRefresh) {
+
+        this.incrementalRefresh = incrementalRefresh;
+    }
+
+
+    /**
+     * Sets whether basenames are reloaded as soon as the {@link MessageProvider} reports changes of them (defaults to
+     * false). This requires an {@link ObservableMessageProvider} and is started by {@link #afterPropertiesSet()} or
+     * {@link #startReloadingOnChange()}.
+     *
+     * @param  reloadOnChange  true to reload basenames on reported changes
+     */
+    public void setReloadOnChange(boolean reloadOnChange) {
+
+        this.reloadOnChange = reloadOnChange;
+    }
 }
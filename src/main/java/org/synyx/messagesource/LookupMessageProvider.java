@@ -0,0 +1,40 @@
+package org.synyx.messagesource;
+
+import java.util.Collection;
+import java.util.Map;
+
+
+/**
+ * {@link MessageProvider} that is able to look up single messages (or a few related ones) cheaply, so messages can be
+ * read on demand instead of reading all messages of a basename at once.
+ *
+ * @author  agent - agent@local
+ */
+public interface LookupMessageProvider extends MessageProvider {
+
+    /**
+     * Returns the messages with the given code in all {@link java.util.Locale}s for the given basenames.
+     *
+     * @param  basenames  the basenames to look in
+     * @param  code  the message-code
+     *
+     * @return  a {@link Map} of basename to its {@link Messages} with the given code, basenames without such a message
+     *          may be missing
+     */
+    Map<String, Messages> getMessagesByCode(Collection<String> basenames, String code);
+
+
+    /**
+     * Returns the messages whose codes start with the given prefix in all {@link java.util.Locale}s for the given
+     * basenames. This is used to read related messages (like all codes starting with "user.") in advance, so only up to
+     * the given number of messages (in all basenames and {@link java.util.Locale}s) are read.
+     *
+     * @param  basenames  the basenames to look in
+     * @param  codePrefix  the prefix of the message-codes
+     * @param  maxMessages  the maximum number of messages to read
+     *
+     * @return  a {@link Map} of basename to its {@link Messages} with codes starting with the prefix, basenames without
+     *          such messages may be missing, or null if there are more than maxMessages such messages
+     */
+    Map<String, Messages> getMessagesByCodePrefix(Collection<String> basenames, String codePrefix, int maxMessages);
+}
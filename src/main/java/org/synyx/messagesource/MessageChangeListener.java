@@ -0,0 +1,19 @@
+package org.synyx.messagesource;
+
+import java.util.Collection;
+
+
+/**
+ * Listener that is notified by an {@link ObservableMessageProvider} when messages changed.
+ *
+ * @author  agent - agent@local
+ */
+public interface MessageChangeListener {
+
+    /**
+     * Called when the messages of the given basenames changed (or the basenames were added or removed).
+     *
+     * @param  basenames  the changed basenames
+     */
+    void messagesChanged(Collection<String> basenames);
+}
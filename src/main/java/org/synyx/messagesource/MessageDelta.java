@@ -0,0 +1,160 @@
+package org.synyx.messagesource;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Changes of messages since a given watermark, as returned by a {@link DeltaMessageProvider}: messages that were added
+ * or changed and messages that were removed, for any number of basenames, as well as the watermark to ask for the
+ * next changes with.
+ *
+ * @author  agent - agent@local
+ */
+public class MessageDelta {
+
+    private final Map<String, Messages> changedMessages = new HashMap<String, Messages>();
+    private final Map<String, Messages> removedMessages = new HashMap<String, Messages>();
+    private long watermark;
+
+    /**
+     * Creates a new (empty) instance.
+     *
+     * @param  watermark  the watermark to ask for the next changes with
+     */
+    public MessageDelta(long watermark) {
+
+        this.watermark = watermark;
+    }
+
+    /**
+     * Adds a message that was added or changed.
+     *
+     * @param  basename  the basename of the message
+     * @param  locale  the {@link Locale} of the message or null for default
+     * @param  key  the message-code
+     * @param  message  the (new) message
+     */
+    public void addChangedMessage(String basename, Locale locale, String key, String message) {
+
+        getMessages(changedMessages, basename).addMessage(locale, key, message);
+
+        Messages removed = removedMessages.get(basename);
+
+        if (removed != null) {
+            removed.removeMessage(locale, key);
+        }
+    }
+
+
+    /**
+     * Adds a message that was removed.
+     *
+     * @param  basename  the basename of the message
+     * @param  locale  the {@link Locale} of the message or null for default
+     * @param  key  the message-code
+     */
+    public void addRemovedMessage(String basename, Locale locale, String key) {
+
+        getMessages(removedMessages, basename).addMessage(locale, key, "");
+
+        Messages changed = changedMessages.get(basename);
+
+        if (changed != null) {
+            changed.removeMessage(locale, key);
+        }
+    }
+
+
+    /**
+     * Returns all basenames that have changed or removed messages.
+     *
+     * @return  the basenames
+     */
+    public Set<String> getBasenames() {
+
+        Set<String> basenames = new HashSet<String>(changedMessages.keySet());
+        basenames.addAll(removedMessages.keySet());
+
+        return basenames;
+    }
+
+
+    /**
+     * Returns the messages of the given basename that were added or changed.
+     *
+     * @param  basename  the basename
+     *
+     * @return  the changed messages (might be empty)
+     */
+    public Messages getChangedMessages(String basename) {
+
+        Messages messages = changedMessages.get(basename);
+
+        return messages != null ? messages : new Messages();
+    }
+
+
+    /**
+     * Returns the messages of the given basename that were removed. Only their {@link Locale}s and codes are relevant.
+     *
+     * @param  basename  the basename
+     *
+     * @return  the removed messages (might be empty)
+     */
+    public Messages getRemovedMessages(String basename) {
+
+        Messages messages = removedMessages.get(basename);
+
+        return messages != null ? messages : new Messages();
+    }
+
+
+    /**
+     * Returns true if there are no changes at all.
+     *
+     * @return  true if nothing changed
+     */
+    public boolean isEmpty() {
+
+        return changedMessages.isEmpty() && removedMessages.isEmpty();
+    }
+
+
+    /**
+     * Returns the watermark to ask for the next changes with.
+     *
+     * @return  the watermark
+     */
+    public long getWatermark() {
+
+        return watermark;
+    }
+
+
+    /**
+     * Sets the watermark to ask for the next changes with.
+     *
+     * @param  watermark  the watermark
+     */
+    public void setWatermark(long watermark) {
+
+        this.watermark = watermark;
+    }
+
+
+    private Messages getMessages(Map<String, Messages> messagesByBasename, String basename) {
+
+        Messages messages = messagesByBasename.get(basename);
+
+        if (messages == null) {
+            messages = new Messages();
+            messagesByBasename.put(basename, messages);
+        }
+
+        return messages;
+    }
+}
@@ -0,0 +1,338 @@
+package org.synyx.messagesource;
+
+import org.synyx.messagesource.util.BoundedConcurrentCache;
+import org.synyx.messagesource.util.LocaleUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * Resolves messages on demand using a {@link LookupMessageProvider} instead of holding all messages in memory. The
+ * messages of a code (in all {@link Locale}s of all basenames) are read on first use and kept in a bounded cache;
+ * codes that do not exist are cached as well, so repeatedly resolving unknown codes does not hit the
+ * {@link LookupMessageProvider} again. Messages are resolved in the same order as by {@link MessageSnapshot}: first
+ * basename, then most specific {@link Locale}. Threads missing the same code at the same time share a single read.
+ *
+ * <p>If siblings are prefetched, a miss reads all codes sharing the part of the code up to its last dot (e.g. all
+ * codes starting with "user." when resolving "user.name") with a single call and caches them all. Only up to a
+ * maximum number of messages are read this way; larger prefixes are read code by code. The codes found for each
+ * prefix (none at all, too many, or which ones) are remembered in a bounded cache of their own, so later misses of the
+ * same prefix either need no call (codes that do not exist) or read only the missing code.</p>
+ *
+ * <p>Instances are thread-safe. They are replaced as a whole on reinitialization, which drops the cache.</p>
+ *
+ * @author  agent - agent@local
+ */
+final class MessageLookup {
+
+    /**
+     * Cache entry of codes that do not exist in any basename.
+     */
+    private static final List<Map<Locale, CachedMessage>> NOT_FOUND = Collections.emptyList();
+
+    /**
+     * Entry of the prefix cache for prefixes with too many messages to prefetch.
+     */
+    private static final Set<String> TOO_MANY = Collections.unmodifiableSet(new HashSet<String>());
+
+    /**
+     * The maximum number of prefixes whose codes are remembered.
+     */
+    private static final int MAX_PREFIXES = 1024;
+
+    /**
+     * The maximum number of {@link Locale}s whose resolving-paths are kept.
+     */
+    private static final int MAX_PATHS = 256;
+
+    private final LookupMessageProvider messageProvider;
+    private final List<String> basenames;
+    private final Locale defaultLocale;
+    private final BoundedConcurrentCache<String, List<Map<Locale, CachedMessage>>> cache;
+    private final boolean prefetchSiblings;
+    private final int maxPrefetchedMessages;
+    private final BoundedConcurrentCache<String, Set<String>> prefixes =
+        new BoundedConcurrentCache<String, Set<String>>(MAX_PREFIXES);
+    private final BoundedConcurrentCache<Locale, List<Locale>> paths =
+        new BoundedConcurrentCache<Locale, List<Locale>>(MAX_PATHS);
+    private final ConcurrentMap<String, FutureTask<List<Map<Locale, CachedMessage>>>> codeLoads =
+        new ConcurrentHashMap<String, FutureTask<List<Map<Locale, CachedMessage>>>>();
+    private final ConcurrentMap<String, FutureTask<Map<String, List<Map<Locale, CachedMessage>>>>> prefixLoads =
+        new ConcurrentHashMap<String, FutureTask<Map<String, List<Map<Locale, CachedMessage>>>>>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param  messageProvider  the {@link LookupMessageProvider} to read messages from
+     * @param  basenames  the basenames in the order they are resolved
+     * @param  defaultLocale  the default {@link Locale} used to build resolving-paths, may be null
+     * @param  cache  the (empty) cache to keep the messages of each code in
+     * @param  prefetchSiblings  whether to read all codes sharing the prefix of a code missing in the cache
+     * @param  maxPrefetchedMessages  the maximum number of messages read for a prefix, must be positive
+     */
+    MessageLookup(LookupMessageProvider messageProvider, List<String> basenames, Locale defaultLocale,
+        BoundedConcurrentCache<String, List<Map<Locale, CachedMessage>>> cache, boolean prefetchSiblings,
+        int maxPrefetchedMessages) {
+
+        if (maxPrefetchedMessages < 1) {
+            throw new IllegalArgumentException("maxPrefetchedMessages must be positive but was "
+                + maxPrefetchedMessages);
+        }
+
+        this.messageProvider = messageProvider;
+        this.basenames = Collections.unmodifiableList(new ArrayList<String>(basenames));
+        this.defaultLocale = defaultLocale;
+        this.cache = cache;
+        this.prefetchSiblings = prefetchSiblings;
+        this.maxPrefetchedMessages = maxPrefetchedMessages;
+    }
+
+    /**
+     * Returns the {@link CachedMessage} for the given code and {@link Locale} or null if there is none.
+     *
+     * @param  code  the message-code
+     * @param  locale  the {@link Locale} to resolve the message for
+     *
+     * @return  the {@link CachedMessage} or null
+     */
+    CachedMessage resolve(String code, Locale locale) {
+
+        List<Map<Locale, CachedMessage>> messages = cache.get(code);
+
+        if (messages == null) {
+            messages = load(code);
+        }
+
+        if (messages.isEmpty()) {
+            return null;
+        }
+
+        List<Locale> path = getPath(locale);
+
+        for (int i = 0; i < messages.size(); i++) {
+            Map<Locale, CachedMessage> basenameMessages = messages.get(i);
+
+            for (int j = 0; j < path.size(); j++) {
+                CachedMessage message = basenameMessages.get(path.get(j));
+
+                if (message != null) {
+                    return message;
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Returns the resolving-path of the given {@link Locale}, building it only on first use.
+     */
+    private List<Locale> getPath(Locale locale) {
+
+        if (locale == null) {
+            return LocaleUtils.getPath(null, defaultLocale);
+        }
+
+        List<Locale> path = paths.get(locale);
+
+        if (path == null) {
+            path = paths.put(locale, Collections.unmodifiableList(LocaleUtils.getPath(locale, defaultLocale)));
+        }
+
+        return path;
+    }
+
+
+    private List<Map<Locale, CachedMessage>> load(String code) {
+
+        int separator = prefetchSiblings ? code.lastIndexOf('.') : -1;
+
+        if (separator > 0) {
+            String prefix = code.substring(0, separator + 1);
+            Set<String> codes = prefixes.get(prefix);
+
+            if (codes == null) {
+                Map<String, List<Map<Locale, CachedMessage>>> messagesByCode = loadPrefix(prefix);
+
+                if (messagesByCode != null) {
+                    List<Map<Locale, CachedMessage>> messages = messagesByCode.get(code);
+
+                    return messages != null ? messages : NOT_FOUND;
+                }
+            } else if (codes != TOO_MANY && !codes.contains(code)) {
+                return NOT_FOUND;
+            }
+
+            // too many siblings or the code was evicted since the prefix was read: read only the code itself
+        }
+
+        return loadCode(code);
+    }
+
+
+    /**
+     * Reads the messages of the given code (unless another thread is reading them already) and caches them.
+     */
+    private List<Map<Locale, CachedMessage>> loadCode(final String code) {
+
+        return await(codeLoads, code, new Callable<List<Map<Locale, CachedMessage>>>() {
+
+                    public List<Map<Locale, CachedMessage>> call() {
+
+                        List<Map<Locale, CachedMessage>> messages =
+                            group(messageProvider.getMessagesByCode(basenames, code)).get(code);
+
+                        return cache.put(code, messages != null ? messages : NOT_FOUND);
+                    }
+                });
+    }
+
+
+    /**
+     * Reads the messages of all codes starting with the given prefix (unless another thread is reading them already),
+     * caches them and remembers the codes found. Returns the messages by code or null if there are too many.
+     */
+    private Map<String, List<Map<Locale, CachedMessage>>> loadPrefix(final String prefix) {
+
+        return await(prefixLoads, prefix, new Callable<Map<String, List<Map<Locale, CachedMessage>>>>() {
+
+                    public Map<String, List<Map<Locale, CachedMessage>>> call() {
+
+                        Map<String, Messages> found =
+                            messageProvider.getMessagesByCodePrefix(basenames, prefix, maxPrefetchedMessages);
+
+                        if (found == null) {
+                            prefixes.put(prefix, TOO_MANY);
+
+                            return null;
+                        }
+
+                        Map<String, List<Map<Locale, CachedMessage>>> messagesByCode = group(found);
+
+                        for (Map.Entry<String, List<Map<Locale, CachedMessage>>> entry : messagesByCode.entrySet()) {
+                            cache.put(entry.getKey(), entry.getValue());
+                        }
+
+                        prefixes.put(prefix, Collections.unmodifiableSet(
+                                new HashSet<String>(messagesByCode.keySet())));
+
+                        return messagesByCode;
+                    }
+                });
+    }
+
+
+    /**
+     * Runs the given loader for the given key, or waits for the one another thread is running for the same key
+     * already, and returns its result.
+     */
+    private static <T> T await(ConcurrentMap<String, FutureTask<T>> loads, String key, Callable<T> loader) {
+
+        FutureTask<T> task = new FutureTask<T>(loader);
+        FutureTask<T> running = loads.putIfAbsent(key, task);
+
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                loads.remove(key, task);
+            }
+
+            running = task;
+        }
+
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return running.get();
+                } catch (InterruptedException e) {
+                    // the load is done by another thread, so waiting for it is not cancelled
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * Groups the messages read by code: for each code the messages of each basename (in the order of the basenames)
+     * by {@link Locale}.
+     */
+    private Map<String, List<Map<Locale, CachedMessage>>> group(Map<String, Messages> found) {
+
+        Map<String, List<Map<Locale, CachedMessage>>> messagesByCode =
+            new HashMap<String, List<Map<Locale, CachedMessage>>>();
+
+        for (int i = 0; i < basenames.size(); i++) {
+            Messages basenameMessages = found.get(basenames.get(i));
+
+            if (basenameMessages == null) {
+                continue;
+            }
+
+            for (Locale locale : basenameMessages.getLocales()) {
+                // messages without locale are formatted using the default locale
+                Locale key = locale != null && locale.toString().length() > 0 ? locale : null;
+                Locale formatLocale = key != null ? key : defaultLocale;
+
+                for (Map.Entry<String, String> entry : basenameMessages.getMessages(locale).entrySet()) {
+                    String message = entry.getValue() != null ? entry.getValue() : "";
+
+                    getMessages(messagesByCode, entry.getKey(), i).put(key,
+                        new CachedMessage(message, formatLocale, null));
+                }
+            }
+        }
+
+        return messagesByCode;
+    }
+
+
+    /**
+     * Returns the messages of the basename with the given index for the code, creating empty ones for it and all
+     * basenames before.
+     */
+    private Map<Locale, CachedMessage> getMessages(Map<String, List<Map<Locale, CachedMessage>>> messagesByCode,
+        String code, int index) {
+
+        List<Map<Locale, CachedMessage>> messages = messagesByCode.get(code);
+
+        if (messages == null) {
+            messages = new ArrayList<Map<Locale, CachedMessage>>();
+            messagesByCode.put(code, messages);
+        }
+
+        while (messages.size() <= index) {
+            messages.add(new HashMap<Locale, CachedMessage>());
+        }
+
+        return messages.get(index);
+    }
+}
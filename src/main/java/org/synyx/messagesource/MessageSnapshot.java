@@ -0,0 +1,211 @@
+package org.synyx.messagesource;
+
+import org.synyx.messagesource.util.BoundedConcurrentCache;
+import org.synyx.messagesource.util.LocaleUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Immutable state of an {@link InitializableMessageSource}: the basenames in the order they are resolved, the
+ * messages of all these basenames and the resolving-paths derived from the default {@link Locale}. A new instance is
+ * built completely on each initialization and then published at once, so readers never see a partially built state.
+ *
+ * <p>Messages are stored per basename (by its index within the resolving order) and {@link Locale}. For each requested
+ * {@link Locale} a flattened view (message-code to {@link CachedMessage}) is built on first use, which already applies
+ * the resolving-path and the order of the basenames. Resolving a message (found or not) then costs a single lookup.
+ * Views are shared between all {@link Locale}s that end up with the same existing {@link Locale}s on their path, so
+ * unknown {@link Locale}s do not lead to additional views. Codes that do not exist for any {@link Locale} are rejected
+ * up front without determining a view. The mapping of requested {@link Locale}s to views is held
+ * in a bounded cache, so arbitrary {@link Locale}s cannot grow it without limit. Views and this cache are the only
+ * mutable parts; they are thread-safe and dropped together with the snapshot on reinitialization.</p>
+ *
+ * @author  agent - agent@local
+ */
+final class MessageSnapshot {
+
+    /**
+     * Snapshot used before the first initialization. It contains no messages at all.
+     */
+    static final MessageSnapshot EMPTY = new MessageSnapshot(Collections.<String>emptyList(),
+            Collections.<Map<Locale, Map<String, CachedMessage>>>emptyList(), null,
+            new BoundedConcurrentCache<Locale, Map<String, CachedMessage>>(1));
+
+    private final List<String> basenames;
+    private final List<Map<Locale, Map<String, CachedMessage>>> messages;
+    private final Locale defaultLocale;
+    private final Set<Locale> locales = new HashSet<Locale>();
+    private final Set<String> codes = new HashSet<String>();
+    private final BoundedConcurrentCache<Locale, Map<String, CachedMessage>> resolvingPath;
+    private final ConcurrentMap<List<Locale>, Map<String, CachedMessage>> views =
+        new ConcurrentHashMap<List<Locale>, Map<String, CachedMessage>>();
+
+    /**
+     * Creates a new instance. The given collections must not be modified afterwards.
+     *
+     * @param  basenames  the basenames in the order they are resolved
+     * @param  messages  the compiled messages of each basename (same order as basenames), keyed by {@link Locale}
+     *                   (null for the default messages) and message-code
+     * @param  defaultLocale  the default {@link Locale} used to build resolving-paths, may be null
+     * @param  resolvingPath  the (empty) cache to use for mapping requested {@link Locale}s to their views
+     */
+    MessageSnapshot(List<String> basenames, List<Map<Locale, Map<String, CachedMessage>>> messages,
+        Locale defaultLocale, BoundedConcurrentCache<Locale, Map<String, CachedMessage>> resolvingPath) {
+
+        if (basenames.size() != messages.size()) {
+            throw new IllegalArgumentException("Expected messages for " + basenames.size() + " basenames but got "
+                + messages.size());
+        }
+
+        this.basenames = Collections.unmodifiableList(new ArrayList<String>(basenames));
+        this.messages = Collections.unmodifiableList(new ArrayList<Map<Locale, Map<String, CachedMessage>>>(
+                    messages));
+        this.defaultLocale = defaultLocale;
+        this.resolvingPath = resolvingPath;
+
+        for (Map<Locale, Map<String, CachedMessage>> basenameMessages : messages) {
+            locales.addAll(basenameMessages.keySet());
+
+            for (Map<String, CachedMessage> formatMap : basenameMessages.values()) {
+                codes.addAll(formatMap.keySet());
+            }
+        }
+    }
+
+    /**
+     * Returns the {@link CachedMessage} for the given code and {@link Locale} or null if there is none.
+     *
+     * @param  code  the message-code
+     * @param  locale  the {@link Locale} to resolve the message for
+     *
+     * @return  the {@link CachedMessage} or null
+     */
+    CachedMessage resolve(String code, Locale locale) {
+
+        // codes that do not exist at all are rejected before looking at the locale
+        if (!codes.contains(code)) {
+            return null;
+        }
+
+        return getView(locale).get(code);
+    }
+
+
+    /**
+     * Returns the messages of each basename (same order as {@link #getBasenames()}) by {@link Locale} and code.
+     *
+     * @return  the messages
+     */
+    List<Map<Locale, Map<String, CachedMessage>>> getMessages() {
+
+        return messages;
+    }
+
+
+    /**
+     * Returns the basenames of this snapshot in the order they are resolved.
+     *
+     * @return  the basenames
+     */
+    List<String> getBasenames() {
+
+        return basenames;
+    }
+
+
+    /**
+     * Returns the number of flattened views built so far.
+     *
+     * @return  the number of views
+     */
+    int getViewCount() {
+
+        return views.size();
+    }
+
+
+    private Map<String, CachedMessage> getView(Locale locale) {
+
+        if (locale == null) {
+            return getView(getExistingPath(null));
+        }
+
+        Map<String, CachedMessage> view = resolvingPath.get(locale);
+
+        if (view == null) {
+            view = resolvingPath.put(locale, getView(getExistingPath(locale)));
+        }
+
+        return view;
+    }
+
+
+    private Map<String, CachedMessage> getView(List<Locale> path) {
+
+        Map<String, CachedMessage> view = views.get(path);
+
+        if (view == null) {
+            view = createView(path);
+
+            Map<String, CachedMessage> existing = views.putIfAbsent(path, view);
+
+            if (existing != null) {
+                view = existing;
+            }
+        }
+
+        return view;
+    }
+
+
+    /**
+     * Returns the resolving-path of the given {@link Locale}, leaving out all {@link Locale}s no messages exist for.
+     */
+    private List<Locale> getExistingPath(Locale locale) {
+
+        List<Locale> path = new ArrayList<Locale>();
+
+        for (Locale loc : LocaleUtils.getPath(locale, defaultLocale)) {
+            if (locales.contains(loc)) {
+                path.add(loc);
+            }
+        }
+
+        return path;
+    }
+
+
+    /**
+     * Merges the messages along the given path for all basenames. The first message found for a code (first basename,
+     * most specific {@link Locale}) wins.
+     */
+    private Map<String, CachedMessage> createView(List<Locale> path) {
+
+        Map<String, CachedMessage> view = new HashMap<String, CachedMessage>();
+
+        for (Map<Locale, Map<String, CachedMessage>> basenameMessages : messages) {
+            for (Locale loc : path) {
+                Map<String, CachedMessage> formatMap = basenameMessages.get(loc);
+
+                if (formatMap != null) {
+                    for (Map.Entry<String, CachedMessage> entry : formatMap.entrySet()) {
+                        if (!view.containsKey(entry.getKey())) {
+                            view.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+            }
+        }
+
+        return Collections.unmodifiableMap(view);
+    }
+}
@@ -0,0 +1,26 @@
+package org.synyx.messagesource;
+
+/**
+ * {@link MessageProvider} that notices changes of its messages by itself and notifies registered
+ * {@link MessageChangeListener}s about them.
+ *
+ * @author  agent - agent@local
+ */
+public interface ObservableMessageProvider extends MessageProvider {
+
+    /**
+     * Registers a {@link MessageChangeListener} to be notified about changes. Listeners are notified from a thread of
+     * the {@link ObservableMessageProvider}.
+     *
+     * @param  listener  the listener to add
+     */
+    void addMessageChangeListener(MessageChangeListener listener);
+
+
+    /**
+     * Removes a {@link MessageChangeListener} that was registered before.
+     *
+     * @param  listener  the listener to remove
+     */
+    void removeMessageChangeListener(MessageChangeListener listener);
+}
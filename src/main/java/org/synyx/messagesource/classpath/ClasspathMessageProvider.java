@@ -0,0 +1,307 @@
+package org.synyx.messagesource.classpath;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.Assert;
+import org.springframework.util.FileCopyUtils;
+import org.synyx.messagesource.BulkMessageProvider;
+import org.synyx.messagesource.MessageProvider;
+import org.synyx.messagesource.Messages;
+import org.synyx.messagesource.util.LocaleUtils;
+import org.synyx.messagesource.util.PropertiesParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * {@link MessageProvider} for messages read from the classpath: all files named
+ * basename_language_country_variant.properties (with all parts of the {@link Locale} being optional, see
+ * {@link LocaleUtils#getLocaleSeparator(String)} for basenames containing underscores) within the
+ * given location of all classpath-roots, no matter if these are directories or JAR-files. Files within JARs are read
+ * straight from their entries without extracting them. Nested JARs (like the libraries within a Spring Boot
+ * application) are covered as far as the {@link ClassLoader} exposes them, as the one of Spring Boot does.
+ *
+ * <p>The classpath is searched once with a single pattern on first use (it is not expected to change at runtime). If
+ * the same file exists in several classpath-roots, the one of the first root wins (like
+ * {@link ClassLoader#getResource(String)}). If a parseExecutor is set, files are parsed concurrently; the result does
+ * not depend on the order the files are parsed in.</p>
+ *
+ * @author  agent - agent@local
+ */
+public class ClasspathMessageProvider implements BulkMessageProvider {
+
+    private static final String EXTENSION = ".properties";
+
+    private final ResourcePatternResolver resourcePatternResolver;
+    private final String location;
+
+    private Charset charset = Charset.forName("ISO-8859-1");
+
+    private Executor parseExecutor = null;
+
+    private volatile Map<String, Map<Locale, Resource>> resources;
+
+    /**
+     * Creates a new instance reading from the given location using the default {@link ClassLoader}.
+     *
+     * @param  location  the path of the directory within the classpath-roots to read from (e.g. "messages")
+     */
+    public ClasspathMessageProvider(String location) {
+
+        this(location, null);
+    }
+
+
+    /**
+     * Creates a new instance reading from the given location using the given {@link ClassLoader}.
+     *
+     * @param  location  the path of the directory within the classpath-roots to read from (e.g. "messages")
+     * @param  classLoader  the {@link ClassLoader} to search or null to use the default one
+     */
+    public ClasspathMessageProvider(String location, ClassLoader classLoader) {
+
+        Assert.notNull(location, "location must not be null");
+
+        String trimmed = location.replaceAll("^/+|/+$", "");
+
+        // the roots of JARs cannot be searched, so files have to be within a directory
+        Assert.hasText(trimmed, "location must name a directory within the classpath-roots");
+
+        this.location = trimmed;
+        this.resourcePatternResolver = new PathMatchingResourcePatternResolver(classLoader);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.MessageProvider#getMessages(java.lang.String)
+     */
+    public Messages getMessages(String basename) {
+
+        return getMessages(Collections.singletonList(basename)).get(basename);
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.MessageProvider#getAvailableBaseNames()
+     */
+    public Collection<String> getAvailableBaseNames() {
+
+        return new TreeSet<String>(getResources().keySet());
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.BulkMessageProvider#getAllMessages()
+     */
+    public Map<String, Messages> getAllMessages() {
+
+        return getMessages(getResources().keySet());
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.BulkMessageProvider#getMessages(java.util.Collection)
+     */
+    public Map<String, Messages> getMessages(Collection<String> basenames) {
+
+        Map<String, Messages> messages = new LinkedHashMap<String, Messages>();
+        List<String> fileBasenames = new ArrayList<String>();
+        List<Locale> fileLocales = new ArrayList<Locale>();
+        List<Resource> files = new ArrayList<Resource>();
+
+        for (String basename : basenames) {
+            messages.put(basename, new Messages());
+
+            Map<Locale, Resource> basenameFiles = getResources().get(basename);
+
+            if (basenameFiles != null) {
+                for (Map.Entry<Locale, Resource> entry : basenameFiles.entrySet()) {
+                    fileBasenames.add(basename);
+                    fileLocales.add(entry.getKey());
+                    files.add(entry.getValue());
+                }
+            }
+        }
+
+        List<Map<String, String>> parsed = readFiles(files);
+
+        for (int i = 0; i < files.size(); i++) {
+            messages.get(fileBasenames.get(i)).setMessages(fileLocales.get(i), parsed.get(i));
+        }
+
+        return messages;
+    }
+
+
+    /**
+     * Returns the files by basename and {@link Locale}, searching the classpath on first use.
+     */
+    private Map<String, Map<Locale, Resource>> getResources() {
+
+        Map<String, Map<Locale, Resource>> current = resources;
+
+        if (current == null) {
+            current = findResources();
+            resources = current;
+        }
+
+        return current;
+    }
+
+
+    private Map<String, Map<Locale, Resource>> findResources() {
+
+        Resource[] found;
+
+        try {
+            found = resourcePatternResolver.getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + location
+                    + "/*" + EXTENSION);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not search the classpath for messages in " + location + ": "
+                + e.getMessage(), e);
+        }
+
+        // sorted, so the result does not depend on the order the classpath-roots list their files in
+        Map<String, Map<Locale, Resource>> resourcesByBasename = new TreeMap<String, Map<Locale, Resource>>();
+
+        for (Resource resource : found) {
+            String name = resource.getFilename();
+            String bundleName = name.substring(0, name.length() - EXTENSION.length());
+
+            // basenames may contain underscores, so the locale is taken from the end of the name
+            int separator = LocaleUtils.getLocaleSeparator(bundleName);
+            String basename = separator < 0 ? bundleName : bundleName.substring(0, separator);
+            Locale locale = separator < 0 ? null : LocaleUtils.toLocale(bundleName.substring(separator + 1));
+
+            Map<Locale, Resource> resourcesByLocale = resourcesByBasename.get(basename);
+
+            if (resourcesByLocale == null) {
+                resourcesByLocale = new LinkedHashMap<Locale, Resource>();
+                resourcesByBasename.put(basename, resourcesByLocale);
+            }
+
+            // resources are found in the order of the classpath-roots, so the first one wins
+            if (!resourcesByLocale.containsKey(locale)) {
+                resourcesByLocale.put(locale, resource);
+            }
+        }
+
+        return resourcesByBasename;
+    }
+
+
+    /**
+     * Reads the given files, concurrently using the parseExecutor if one is set.
+     *
+     * @return  the messages of each file, in the order of the files
+     */
+    private List<Map<String, String>> readFiles(List<Resource> files) {
+
+        List<Map<String, String>> parsed = new ArrayList<Map<String, String>>(files.size());
+
+        if (parseExecutor == null || files.size() < 2) {
+            for (Resource file : files) {
+                parsed.add(readFile(file));
+            }
+
+            return parsed;
+        }
+
+        List<FutureTask<Map<String, String>>> tasks = new ArrayList<FutureTask<Map<String, String>>>(files.size());
+
+        for (final Resource file : files) {
+            FutureTask<Map<String, String>> task = new FutureTask<Map<String, String>>(
+                    new Callable<Map<String, String>>() {
+
+                        public Map<String, String> call() {
+
+                            return readFile(file);
+                        }
+                    });
+
+            parseExecutor.execute(task);
+            tasks.add(task);
+        }
+
+        try {
+            // collected in the order of the files, so the first failing file is reported
+            for (FutureTask<Map<String, String>> task : tasks) {
+                parsed.add(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading messages from " + location, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            for (FutureTask<Map<String, String>> task : tasks) {
+                task.cancel(true);
+            }
+        }
+
+        return parsed;
+    }
+
+
+    private Map<String, String> readFile(Resource file) {
+
+        try {
+            // reads straight from the file or JAR-entry and closes it
+            byte[] content = FileCopyUtils.copyToByteArray(file.getInputStream());
+            Map<String, String> messages = new HashMap<String, String>();
+            PropertiesParser.parse(ByteBuffer.wrap(content), charset, messages);
+
+            return messages;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load messages from " + file + ": " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Could not load messages from " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Sets the encoding of the files (defaults to ISO-8859-1, like {@link Properties#load(java.io.InputStream)}).
+     *
+     * @param  encoding  the name of the encoding
+     */
+    public void setEncoding(String encoding) {
+
+        Assert.notNull(encoding, "encoding must not be null");
+
+        this.charset = Charset.forName(encoding);
+    }
+
+
+    /**
+     * Sets the {@link Executor} used to parse files concurrently. Defaults to null, which parses the files one after
+     * another.
+     *
+     * @param  parseExecutor  the {@link Executor} or null
+     */
+    public void setParseExecutor(Executor parseExecutor) {
+
+        this.parseExecutor = parseExecutor;
+    }
+}
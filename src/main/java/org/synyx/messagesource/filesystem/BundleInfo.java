@@ -4,10 +4,15 @@
 package org.synyx.messagesource.filesystem;
 
 import org.synyx.messagesource.util.LocaleUtils;
+import org.synyx.messagesource.util.PropertiesParser;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 
-import java.util.*;
+import java.nio.charset.Charset;
+
+import java.util.Locale;
+import java.util.Map;
 
 
 /**
@@ -20,8 +25,9 @@ class BundleInfo {
 
     Locale locale;
     File file;
+    String basename;
 
-    private String propertyFileLoaderEncoding = null;
+    private Charset charset = null;
 
     /**
      * Creates a new instance.
@@ -38,6 +44,7 @@ class BundleInfo {
     public BundleInfo(File file, String basename, String propertyFileLoaderEncoding) {
 
         this.file = file;
+        this.basename = basename;
 
         int prefixLength = basename.length();
         int postfixLength = ".properties".length();
@@ -46,7 +53,10 @@ class BundleInfo {
         String localeString = fileName.substring(prefixLength, fileName.length() - postfixLength);
 
         locale = LocaleUtils.toLocale(localeString);
-        this.propertyFileLoaderEncoding = propertyFileLoaderEncoding;
+
+        if (propertyFileLoaderEncoding != null) {
+            this.charset = Charset.forName(propertyFileLoaderEncoding);
+        }
     }
 
     /**
@@ -56,55 +66,12 @@ class BundleInfo {
      */
     public Map<String, String> getMessages() {
 
-        Properties properties = loadProperties(file, this.propertyFileLoaderEncoding);
-        Map<String, String> messages = new HashMap<String, String>(properties.size());
-
-        Enumeration<Object> keys = properties.keys();
-
-        while (keys.hasMoreElements()) {
-            String key = (String) keys.nextElement();
-            String value = (String) properties.getProperty(key);
-            messages.put(key, value);
-        }
-
-        return messages;
-    }
-
-
-    /**
-     * Loads {@link Properties} from the given {@link File} while handling errors.
-     *
-     * @param  file  the file to load from
-     *
-     * @return  the {@link Properties} loaded
-     */
-
-    private Properties loadProperties(File file, String encoding) {
-
-        FileInputStream fis = null;
-
         try {
-            Properties properties = new Properties();
-
-            if (encoding == null) {
-                fis = new FileInputStream(file);
-                properties.load(fis);
-            } else {
-                Reader in = new InputStreamReader(new FileInputStream(file), encoding);
-                properties.load(in);
-            }
-
-            return properties;
+            return PropertiesParser.load(file, charset);
         } catch (IOException e) {
             throw new RuntimeException("Could not load messages from " + file + ": " + e.getMessage(), e);
-        } finally {
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    // intentionally left blank
-                }
-            }
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Could not load messages from " + file + ": " + e.getMessage(), e);
         }
     }
 }
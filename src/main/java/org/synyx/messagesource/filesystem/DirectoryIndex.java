@@ -0,0 +1,189 @@
+package org.synyx.messagesource.filesystem;
+
+import org.synyx.messagesource.util.LocaleUtils;
+
+import java.io.File;
+
+import java.util.*;
+
+
+/**
+ * Index of the bundle-files within a directory by basename and {@link Locale}, built by listing the directory once. A
+ * file named basename_language_country_variant.properties (with all parts of the {@link Locale} being optional)
+ * belongs to the basename before its locale-part (see {@link LocaleUtils#getLocaleSeparator(String)}), so basenames
+ * may contain underscores. Basenames that end like a locale themselves (e.g. messages_de) are still found by
+ * {@link #getFiles(String)}, which matches files by the name of the basename if it is not in the index.
+ *
+ * <p>Files are only added, removed or renamed along with a change of the modification time of the directory, so an
+ * index is current as long as this modification time stays the same. Since some file-systems store modification
+ * times in seconds only, an index built within the second after the directory changed is never considered current.
+ * Instances are immutable.</p>
+ *
+ * @author  agent - agent@local
+ */
+class DirectoryIndex {
+
+    private static final String EXTENSION = ".properties";
+
+    private final long directoryModified;
+    private final long scanned;
+    private final List<File> files;
+    private final Map<String, Map<Locale, File>> filesByBasename;
+
+    private DirectoryIndex(long directoryModified, long scanned, List<File> files,
+        Map<String, Map<Locale, File>> filesByBasename) {
+
+        this.directoryModified = directoryModified;
+        this.scanned = scanned;
+        this.files = files;
+        this.filesByBasename = filesByBasename;
+    }
+
+    /**
+     * Lists the given directory and builds the index of its bundle-files.
+     *
+     * @param  directory  the directory to list
+     *
+     * @return  the index
+     */
+    public static DirectoryIndex scan(File directory) {
+
+        long scanned = System.currentTimeMillis();
+
+        // taken before listing, so changes during listing make the index outdated
+        long directoryModified = directory.lastModified();
+        File[] listed = directory.listFiles(new ExtensionFilter("properties"));
+
+        if (listed == null) {
+            throw new IllegalStateException("Could not list files of " + directory.getAbsolutePath());
+        }
+
+        Map<String, Map<Locale, File>> filesByBasename = new HashMap<String, Map<Locale, File>>();
+
+        for (File file : listed) {
+            String name = file.getName();
+            String basename = getBasename(file);
+            Locale locale = getLocale(name, basename);
+
+            Map<Locale, File> filesByLocale = filesByBasename.get(basename);
+
+            if (filesByLocale == null) {
+                filesByLocale = new HashMap<Locale, File>();
+                filesByBasename.put(basename, filesByLocale);
+            }
+
+            filesByLocale.put(locale, file);
+        }
+
+        return new DirectoryIndex(directoryModified, scanned, Collections.unmodifiableList(Arrays.asList(listed)),
+                filesByBasename);
+    }
+
+
+    /**
+     * Returns whether this index still reflects the files within the given directory.
+     *
+     * @param  directory  the directory this index was built for
+     *
+     * @return  true if the index is current
+     */
+    public boolean isCurrent(File directory) {
+
+        return scanned >= directoryModified + 1000 && directory.lastModified() == directoryModified;
+    }
+
+
+    /**
+     * Returns all basenames that have files.
+     *
+     * @return  the basenames
+     */
+    public Set<String> getBasenames() {
+
+        return Collections.unmodifiableSet(filesByBasename.keySet());
+    }
+
+
+    /**
+     * Returns the files of the given basename by their {@link Locale} (null for the file without {@link Locale}).
+     *
+     * @param  basename  the basename
+     *
+     * @return  the files of the basename, empty if there are none
+     */
+    public Map<Locale, File> getFiles(String basename) {
+
+        Map<Locale, File> filesByLocale = filesByBasename.get(basename);
+
+        if (filesByLocale != null) {
+            return Collections.unmodifiableMap(filesByLocale);
+        }
+
+        // the basename may end like a locale (e.g. messages_de), so its files were indexed under another basename
+        Map<Locale, File> matching = new HashMap<Locale, File>();
+
+        for (File file : files) {
+            String name = file.getName();
+
+            if (name.equals(basename + EXTENSION)
+                    || (name.startsWith(basename + "_")
+                        && LocaleUtils.getLocaleSeparator(name.substring(0, name.length() - EXTENSION.length()))
+                        == basename.length())) {
+                matching.put(getLocale(name, basename), file);
+            }
+        }
+
+        return matching;
+    }
+
+
+    /**
+     * Returns all bundle-files of the directory.
+     *
+     * @return  the files
+     */
+    public List<File> getFiles() {
+
+        return files;
+    }
+
+
+    /**
+     * Returns the basename the given file belongs to.
+     *
+     * @param  file  a file of the directory
+     *
+     * @return  the basename
+     */
+    public static String getBasename(File file) {
+
+        return getBasename(file.getName());
+    }
+
+
+    /**
+     * Returns the basename a file with the given name belongs to.
+     *
+     * @param  name  the name of a bundle-file
+     *
+     * @return  the basename
+     */
+    public static String getBasename(String name) {
+
+        String bundleName = name.substring(0, name.length() - EXTENSION.length());
+        int separator = LocaleUtils.getLocaleSeparator(bundleName);
+
+        return separator < 0 ? bundleName : bundleName.substring(0, separator);
+    }
+
+
+    /**
+     * Returns the {@link Locale} of the file with the given name belonging to the given basename: everything between
+     * the underscore after the basename and the extension (null if there is nothing).
+     */
+    private static Locale getLocale(String name, String basename) {
+
+        return basename.length() + EXTENSION.length() < name.length()
+            ? LocaleUtils.toLocale(name.substring(basename.length() + 1, name.length() - EXTENSION.length())) : null;
+    }
+}
@@ -3,31 +3,107 @@
  */
 package org.synyx.messagesource.filesystem;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.synyx.messagesource.BulkMessageProvider;
+import org.synyx.messagesource.ChangeAwareMessageProvider;
+import org.synyx.messagesource.FingerprintingMessageProvider;
 import org.synyx.messagesource.MessageAcceptor;
+import org.synyx.messagesource.MessageChangeListener;
 import org.synyx.messagesource.MessageProvider;
 import org.synyx.messagesource.Messages;
+import org.synyx.messagesource.ObservableMessageProvider;
 import org.synyx.messagesource.util.LocaleUtils;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 
 /**
  * {@link MessageProvider} for messages read from a directory. This acts also as a {@link MessageAcceptor} that can
- * write files to the given directory.
+ * write files to the given directory. Changed basenames are detected using the modification times of the files, the
+ * fingerprint of a basename consists of the names, modification times and sizes of its files. If supportedLocales are
+ * set, files of other languages are skipped by their names without reading them.
+ *
+ * <p>The directory is listed once into an index of its files by basename and {@link Locale} (see
+ * {@link DirectoryIndex}), which is shared by all methods and only built again once files were added, removed or
+ * renamed.</p>
+ *
+ * <p>As an {@link ObservableMessageProvider} this watches the directory while {@link MessageChangeListener}s are
+ * registered: using a {@link WatchService} by default, or by polling the fingerprints of the basenames every
+ * pollInterval milliseconds if one is set (for file-systems whose changes are not reported, e.g. network shares).
+ * Bursts of changes (like an editor saving or a deployment copying several files) are reported together once no
+ * further change happened for debounceDelay milliseconds. While watching or if cacheBundles is set, parsed files are
+ * kept until their modification time or size changes or a change of them is reported, so reloading a basename only
+ * parses its changed files. Files modified within {@link #MODIFICATION_TIME_GRANULARITY} before they were parsed are
+ * parsed again every time, since a change within the same time-step would not change their modification time. The
+ * messages of kept files are handed out without copying them, unless they are modified.</p>
+ *
+ * <p>If a parseExecutor is set, the files of a basename (or of all basenames read at once as a
+ * {@link BulkMessageProvider}) are parsed concurrently. The result does not depend on the order the files are parsed
+ * in.</p>
  *
  * @author  Marc Kannegiesser - kannegiesser@synyx.de
  */
-public class FileSystemMessageProvider implements MessageProvider, MessageAcceptor {
+public class FileSystemMessageProvider implements BulkMessageProvider, ChangeAwareMessageProvider,
+    FingerprintingMessageProvider, ObservableMessageProvider, MessageAcceptor {
+
+    private static final Log LOG = LogFactory.getLog(FileSystemMessageProvider.class);
 
     private static final String PROPERTY_FILE_LOADER_DEFAULT_ENCODING = "ISO-8859-1";
 
+    /**
+     * Time in milliseconds file-systems may round modification times to (some store seconds, FAT two seconds).
+     */
+    static final long MODIFICATION_TIME_GRANULARITY = 2000;
+
+    /**
+     * Interval in milliseconds to poll the directory at if no pollInterval is set and it cannot be watched using a
+     * {@link WatchService}.
+     */
+    static final long FALLBACK_POLL_INTERVAL = 5000;
+
     private File baseDir;
 
     private String propertyFileLoaderEncoding = null;
 
+    private Set<Locale> supportedLocales = null;
+    private Set<String> supportedLanguages = null;
+
+    private volatile DirectoryIndex index;
+
+    private boolean cacheBundles = false;
+    private final Map<File, CachedBundle> bundleCache = new ConcurrentHashMap<File, CachedBundle>();
+
+    private Executor parseExecutor = null;
+
+    private long debounceDelay = 500;
+    private long pollInterval = 0;
+
+    private final List<MessageChangeListener> listeners = new CopyOnWriteArrayList<MessageChangeListener>();
+    private WatchService watchService;
+    private ScheduledExecutorService poller;
+
     /**
      * Creates a new instance reading from the path represented by the given {@link String}.
      *
@@ -79,19 +155,146 @@ public class FileSystemMessageProvider implements MessageProvider, MessageAccept
      */
     public Messages getMessages(String basename) {
 
-        Messages messages = new Messages();
+        return getMessages(Collections.singletonList(basename)).get(basename);
+    }
 
-        List<BundleInfo> bundleInfos = resolveBundle(basename);
 
-        for (BundleInfo bundleInfo : bundleInfos) {
-            Map<String, String> map = bundleInfo.getMessages();
-            messages.setMessages(bundleInfo.locale, map);
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.BulkMessageProvider#getAllMessages()
+     */
+    public Map<String, Messages> getAllMessages() {
+
+        // sorted, so the result does not depend on the order the files are listed in
+        return getMessages(new TreeSet<String>(getIndex().getBasenames()));
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.BulkMessageProvider#getMessages(java.util.Collection)
+     */
+    public Map<String, Messages> getMessages(Collection<String> basenames) {
+
+        Map<String, Messages> messages = new LinkedHashMap<String, Messages>();
+        List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>();
+
+        for (String basename : basenames) {
+            messages.put(basename, new Messages());
+            bundleInfos.addAll(resolveBundle(basename));
+        }
+
+        List<Map<String, String>> parsed = readBundles(bundleInfos);
+
+        for (int i = 0; i < bundleInfos.size(); i++) {
+            BundleInfo bundleInfo = bundleInfos.get(i);
+            messages.get(bundleInfo.basename).setMessages(bundleInfo.locale, parsed.get(i));
         }
 
         return messages;
     }
 
 
+    /**
+     * Reads the given bundles, concurrently using the parseExecutor if one is set.
+     *
+     * @return  the messages of each bundle, in the order of the bundles
+     */
+    private List<Map<String, String>> readBundles(List<BundleInfo> bundleInfos) {
+
+        List<Map<String, String>> parsed = new ArrayList<Map<String, String>>(bundleInfos.size());
+
+        if (parseExecutor == null || bundleInfos.size() < 2) {
+            for (BundleInfo bundleInfo : bundleInfos) {
+                parsed.add(readBundle(bundleInfo));
+            }
+
+            return parsed;
+        }
+
+        List<FutureTask<Map<String, String>>> tasks = new ArrayList<FutureTask<Map<String, String>>>(
+                bundleInfos.size());
+
+        for (final BundleInfo bundleInfo : bundleInfos) {
+            FutureTask<Map<String, String>> task = new FutureTask<Map<String, String>>(
+                    new Callable<Map<String, String>>() {
+
+                        public Map<String, String> call() {
+
+                            return readBundle(bundleInfo);
+                        }
+                    });
+
+            parseExecutor.execute(task);
+            tasks.add(task);
+        }
+
+        try {
+            // collected in the order of the bundles, so the first failing bundle is reported
+            for (FutureTask<Map<String, String>> task : tasks) {
+                parsed.add(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading messages from " + baseDir.getAbsolutePath(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            for (FutureTask<Map<String, String>> task : tasks) {
+                task.cancel(true);
+            }
+        }
+
+        return parsed;
+    }
+
+
+    /**
+     * Returns the messages of the given bundle, parsing its file unless it is cached with the same modification time
+     * and size and was parsed long enough after its modification.
+     */
+    private Map<String, String> readBundle(BundleInfo bundleInfo) {
+
+        if (!isCachingBundles()) {
+            return bundleInfo.getMessages();
+        }
+
+        File file = bundleInfo.file;
+
+        // taken before parsing, so changes during parsing lead to parsing the file again next time
+        long parsed = System.currentTimeMillis();
+        long modified = file.lastModified();
+        long size = file.length();
+        CachedBundle cached = bundleCache.get(file);
+
+        if (cached == null || !cached.isCurrent(modified, size)) {
+            cached = new CachedBundle(parsed, modified, size, bundleInfo.getMessages());
+            bundleCache.put(file, cached);
+        }
+
+        // callers may modify the messages, which copies them then
+        return new SharedMessages(cached.messages);
+    }
+
+
+    /**
+     * Returns whether parsed files are kept: if cacheBundles is set or while watching the directory, when changes are
+     * reloaded file by file.
+     */
+    private boolean isCachingBundles() {
+
+        return cacheBundles || !listeners.isEmpty();
+    }
+
+
     /**
      * Returns {@link BundleInfo}s for all files in the directory matching the given basename.
      *
@@ -103,10 +306,11 @@ public class FileSystemMessageProvider implements MessageProvider, MessageAccept
 
         List<BundleInfo> bundles = new ArrayList<BundleInfo>();
 
-        File[] files = baseDir.listFiles(new BundleFilter(basename));
-
-        for (File file : files) {
-            bundles.add(new BundleInfo(file, basename, this.propertyFileLoaderEncoding));
+        for (Map.Entry<Locale, File> entry : getIndex().getFiles(basename).entrySet()) {
+            // the locale is taken from the name of the file, so unsupported files are never read
+            if (isSupported(entry.getKey())) {
+                bundles.add(new BundleInfo(entry.getValue(), basename, this.propertyFileLoaderEncoding));
+            }
         }
 
         return bundles;
@@ -120,25 +324,93 @@ public class FileSystemMessageProvider implements MessageProvider, MessageAccept
      */
     public Collection<String> getAvailableBaseNames() {
 
-        File[] files = baseDir.listFiles(new ExtensionFilter("properties"));
+        return new HashSet<String>(getIndex().getBasenames());
+    }
+
+
+    /**
+     * Returns the index of the files within the directory, listing the directory again only if files were added,
+     * removed or renamed since it was listed last.
+     */
+    private DirectoryIndex getIndex() {
+
+        DirectoryIndex current = index;
+
+        if (current == null || !current.isCurrent(baseDir)) {
+            current = DirectoryIndex.scan(baseDir);
+            index = current;
+
+            // drop cached bundles of files that were removed
+            bundleCache.keySet().retainAll(current.getFiles());
+        }
+
+        return current;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.ChangeAwareMessageProvider#getChangedBaseNames(long)
+     */
+    public Collection<String> getChangedBaseNames(long since) {
+
+        // some file-systems store modification times in seconds only, so files modified in the second before are
+        // reported as well
+        long threshold = since - 1000;
+
+        // files were added, removed or renamed, which cannot be tracked down to basenames by modification times
+        if (baseDir.lastModified() >= threshold) {
+            return getAvailableBaseNames();
+        }
 
         Set<String> basenames = new HashSet<String>();
 
-        for (File file : files) {
-            String fileName = file.getName();
+        for (File file : getIndex().getFiles()) {
+            if (file.lastModified() >= threshold) {
+                basenames.add(DirectoryIndex.getBasename(file));
+            }
+        }
+
+        return basenames;
+    }
 
-            if (fileName.contains("_")) {
-                int underscorePos = fileName.indexOf("_");
-                fileName = fileName.substring(0, underscorePos);
-            } else {
-                int dotPos = fileName.indexOf(".");
-                fileName = fileName.substring(0, dotPos);
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.FingerprintingMessageProvider#getFingerprints()
+     */
+    public Map<String, String> getFingerprints() {
+
+        // sorted, so the fingerprint does not depend on the order the files are listed in
+        Map<String, SortedSet<String>> filesByBasename = new HashMap<String, SortedSet<String>>();
+
+        for (File file : getIndex().getFiles()) {
+            String basename = DirectoryIndex.getBasename(file);
+            SortedSet<String> fileInfos = filesByBasename.get(basename);
+
+            if (fileInfos == null) {
+                fileInfos = new TreeSet<String>();
+                filesByBasename.put(basename, fileInfos);
             }
 
-            basenames.add(fileName);
+            fileInfos.add(String.format("%s|%d|%d", file.getName(), file.lastModified(), file.length()));
         }
 
-        return basenames;
+        Map<String, String> fingerprints = new HashMap<String, String>();
+
+        for (Map.Entry<String, SortedSet<String>> entry : filesByBasename.entrySet()) {
+            CRC32 checksum = new CRC32();
+
+            for (String fileInfo : entry.getValue()) {
+                checksum.update(fileInfo.getBytes());
+            }
+
+            fingerprints.put(entry.getKey(), entry.getValue().size() + ":" + Long.toHexString(checksum.getValue()));
+        }
+
+        return fingerprints;
     }
 
 
@@ -186,6 +458,9 @@ public class FileSystemMessageProvider implements MessageProvider, MessageAccept
                 }
             }
         }
+
+        // files may have been created within the same second the directory was listed
+        index = null;
     }
 
 
@@ -213,8 +488,458 @@ public class FileSystemMessageProvider implements MessageProvider, MessageAccept
     }
 
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.ObservableMessageProvider#addMessageChangeListener(
+     * org.synyx.messagesource.MessageChangeListener)
+     */
+    public synchronized void addMessageChangeListener(MessageChangeListener listener) {
+
+        listeners.add(listener);
+
+        if (listeners.size() == 1) {
+            try {
+                startWatching();
+            } catch (RuntimeException e) {
+                listeners.remove(listener);
+                throw e;
+            }
+        }
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.synyx.messagesource.ObservableMessageProvider#removeMessageChangeListener(
+     * org.synyx.messagesource.MessageChangeListener)
+     */
+    public synchronized void removeMessageChangeListener(MessageChangeListener listener) {
+
+        if (listeners.remove(listener) && listeners.isEmpty()) {
+            stopWatching();
+        }
+    }
+
+
+    private void startWatching() {
+
+        if (pollInterval > 0) {
+            startPolling(pollInterval);
+
+            return;
+        }
+
+        try {
+            Path directory = baseDir.toPath();
+            watchService = newWatchService(directory);
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            LOG.warn("Could not watch " + baseDir.getAbsolutePath() + ", polling for changes every "
+                + FALLBACK_POLL_INTERVAL + " ms instead", e);
+            closeWatchService();
+            startPolling(FALLBACK_POLL_INTERVAL);
+
+            return;
+        }
+
+        final WatchService service = watchService;
+        Thread thread = new Thread(new Runnable() {
+
+                    public void run() {
+
+                        watch(service);
+                    }
+                }, "FileSystemMessageProvider-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * Creates the {@link WatchService} to watch the given directory with.
+     */
+    WatchService newWatchService(Path directory) throws IOException {
+
+        return directory.getFileSystem().newWatchService();
+    }
+
+
+    private void stopWatching() {
+
+        closeWatchService();
+
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+
+        if (!cacheBundles) {
+            bundleCache.clear();
+        }
+    }
+
+
+    private void closeWatchService() {
+
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // intentionally left blank
+            }
+
+            watchService = null;
+        }
+    }
+
+
+    /**
+     * Waits for changes reported by the given {@link WatchService} until it is closed.
+     */
+    private void watch(WatchService service) {
+
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Set<String> basenames = new HashSet<String>();
+                boolean overflow = false;
+
+                // collect further changes until none happened for debounceDelay milliseconds
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            String name = ((Path) event.context()).getFileName().toString();
+
+                            if (name.endsWith(".properties")) {
+                                basenames.add(DirectoryIndex.getBasename(name));
+
+                                // the file may have changed without changing its modification time or size
+                                bundleCache.remove(new File(baseDir, name));
+                            }
+                        }
+                    }
+
+                    if (!key.reset()) {
+                        LOG.warn("Stopped watching " + baseDir.getAbsolutePath() + " since it is no longer accessible");
+
+                        return;
+                    }
+
+                    key = service.poll(debounceDelay, TimeUnit.MILLISECONDS);
+                }
+
+                // events were lost, so all basenames may have changed
+                if (overflow) {
+                    bundleCache.clear();
+                    basenames.addAll(getAvailableBaseNames());
+                }
+
+                notifyListeners(basenames);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // watching was stopped
+        }
+    }
+
+
+    private void startPolling(long interval) {
+
+        poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                    public Thread newThread(Runnable runnable) {
+
+                        Thread thread = new Thread(runnable, "FileSystemMessageProvider-poll");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+
+        final Map<String, String> initial = getFingerprints();
+        poller.scheduleWithFixedDelay(new Runnable() {
+
+                private Map<String, String> fingerprints = initial;
+
+                public void run() {
+
+                    try {
+                        fingerprints = poll(fingerprints);
+                    } catch (RuntimeException e) {
+                        LOG.warn("Polling " + baseDir.getAbsolutePath() + " for changes failed", e);
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Notifies the listeners about all basenames whose fingerprint differs from the given ones.
+     *
+     * @return  the current fingerprints
+     */
+    private Map<String, String> poll(Map<String, String> fingerprints) {
+
+        Map<String, String> current = getFingerprints();
+        Set<String> basenames = new HashSet<String>();
+
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (!entry.getValue().equals(fingerprints.get(entry.getKey()))) {
+                basenames.add(entry.getKey());
+            }
+        }
+
+        for (String basename : fingerprints.keySet()) {
+            if (!current.containsKey(basename)) {
+                basenames.add(basename);
+            }
+        }
+
+        notifyListeners(basenames);
+
+        return current;
+    }
+
+
+    private void notifyListeners(Set<String> basenames) {
+
+        if (basenames.isEmpty()) {
+            return;
+        }
+
+        Collection<String> changed = Collections.unmodifiableSet(basenames);
+
+        for (MessageChangeListener listener : listeners) {
+            try {
+                listener.messagesChanged(changed);
+            } catch (RuntimeException e) {
+                LOG.warn("Notifying " + listener + " about changes of " + changed + " failed", e);
+            }
+        }
+    }
+
+
+    private boolean isSupported(Locale locale) {
+
+        String language = LocaleUtils.getLanguage(locale);
+
+        return supportedLanguages == null || language.length() == 0 || supportedLanguages.contains(language);
+    }
+
+
+    /**
+     * Returns the {@link Locale}s whose messages are read or null if messages of all {@link Locale}s are read.
+     *
+     * @return  the supported {@link Locale}s or null
+     */
+    public Set<Locale> getSupportedLocales() {
+
+        return supportedLocales;
+    }
+
+
+    /**
+     * Sets the {@link Locale}s whose messages are read. Only their languages are considered: all files of these
+     * languages are read (e.g. foo_de_AT.properties for de_DE) as well as the default files without language. Make
+     * sure the language of the defaultLocale of the MessageSource is among them. Defaults to null, which reads all
+     * files.
+     *
+     * @param  supportedLocales  the {@link Locale}s to read messages for or null to read all of them
+     */
+    public void setSupportedLocales(Collection<Locale> supportedLocales) {
+
+        if (supportedLocales == null) {
+            this.supportedLocales = null;
+            this.supportedLanguages = null;
+
+            return;
+        }
+
+        Assert.notEmpty(supportedLocales, "supportedLocales must not be empty, use null to support all locales");
+
+        Set<String> languages = new HashSet<String>();
+
+        for (Locale locale : supportedLocales) {
+            languages.add(LocaleUtils.getLanguage(locale));
+        }
+
+        this.supportedLocales = new HashSet<Locale>(supportedLocales);
+        this.supportedLanguages = languages;
+    }
+
+
+    /**
+     * Sets whether parsed files are kept in memory until their modification time or size changes or a
+     * {@link WatchService} reports a change of them (defaults to false). This makes reloading a basename cheap if only
+     * some of its files changed, at the cost of holding all messages read a second time. Parsed files are kept anyway
+     * while {@link MessageChangeListener}s are registered.
+     *
+     * @param  cacheBundles  true to keep parsed files
+     */
+    public synchronized void setCacheBundles(boolean cacheBundles) {
+
+        this.cacheBundles = cacheBundles;
+
+        if (!cacheBundles && listeners.isEmpty()) {
+            bundleCache.clear();
+        }
+    }
+
+
+    /**
+     * Sets the {@link Executor} used to parse files concurrently: the files of a basename read by
+     * {@link #getMessages(String)} as well as all files of the basenames read by {@link #getAllMessages()} or
+     * {@link #getMessages(Collection)}. Defaults to null, which parses the files one after another.
+     *
+     * @param  parseExecutor  the {@link Executor} or null
+     */
+    public void setParseExecutor(Executor parseExecutor) {
+
+        this.parseExecutor = parseExecutor;
+    }
+
+
+    /**
+     * Sets the time in milliseconds without further changes after which changes are reported to the
+     * {@link MessageChangeListener}s (defaults to 500). Only applies to watching using a {@link WatchService}.
+     *
+     * @param  debounceDelay  the delay in milliseconds
+     */
+    public void setDebounceDelay(long debounceDelay) {
+
+        Assert.isTrue(debounceDelay >= 0, "debounceDelay must not be negative");
+
+        this.debounceDelay = debounceDelay;
+    }
+
+
+    /**
+     * Sets the interval in milliseconds to poll the directory for changes instead of using a {@link WatchService}
+     * (defaults to 0, which means using a {@link WatchService}). Polling compares the modification times and sizes of
+     * the files, so it also works on file-systems that do not report changes. Takes effect when the first
+     * {@link MessageChangeListener} is registered. If the directory cannot be watched, it is polled every
+     * {@link #FALLBACK_POLL_INTERVAL} milliseconds unless a pollInterval is set.
+     *
+     * @param  pollInterval  the interval in milliseconds or 0 to use a {@link WatchService}
+     */
+    public void setPollInterval(long pollInterval) {
+
+        Assert.isTrue(pollInterval >= 0, "pollInterval must not be negative");
+
+        this.pollInterval = pollInterval;
+    }
+
+
     public static String getPropertyFileLoaderDefaultEncoding() {
 
         return PROPERTY_FILE_LOADER_DEFAULT_ENCODING;
     }
+
+    /**
+     * Messages of a file as parsed at the given time, modification time and size.
+     */
+    private static class CachedBundle {
+
+        private final long parsed;
+        private final long modified;
+        private final long size;
+        private final Map<String, String> messages;
+
+        public CachedBundle(long parsed, long modified, long size, Map<String, String> messages) {
+
+            this.parsed = parsed;
+            this.modified = modified;
+            this.size = size;
+            this.messages = messages;
+        }
+
+        /**
+         * Returns whether the file still has the given modification time and size, and was modified long enough before
+         * it was parsed that any later change would have changed its modification time.
+         */
+        public boolean isCurrent(long modified, long size) {
+
+            return this.modified == modified && this.size == size
+                && parsed - modified > MODIFICATION_TIME_GRANULARITY;
+        }
+    }
+
+    /**
+     * Messages of a cached file, copied before they are modified by put, remove or clear (its views are read-only).
+     */
+    private static class SharedMessages extends AbstractMap<String, String> {
+
+        private Map<String, String> messages;
+        private boolean copied = false;
+
+        public SharedMessages(Map<String, String> messages) {
+
+            this.messages = messages;
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+
+            return copied ? messages.entrySet() : Collections.unmodifiableMap(messages).entrySet();
+        }
+
+
+        @Override
+        public int size() {
+
+            return messages.size();
+        }
+
+
+        @Override
+        public boolean containsKey(Object key) {
+
+            return messages.containsKey(key);
+        }
+
+
+        @Override
+        public String get(Object key) {
+
+            return messages.get(key);
+        }
+
+
+        @Override
+        public String put(String key, String value) {
+
+            return modifiable().put(key, value);
+        }
+
+
+        @Override
+        public String remove(Object key) {
+
+            return modifiable().remove(key);
+        }
+
+
+        @Override
+        public void clear() {
+
+            modifiable().clear();
+        }
+
+
+        private Map<String, String> modifiable() {
+
+            if (!copied) {
+                messages = new HashMap<String, String>(messages);
+                copied = true;
+            }
+
+            return messages;
+        }
+    }
 }
@@ -4,7 +4,10 @@
 package org.synyx.messagesource.importer;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.synyx.messagesource.FingerprintingMessageProvider;
 import org.synyx.messagesource.MessageAcceptor;
 import org.synyx.messagesource.MessageProvider;
 import org.synyx.messagesource.filesystem.FileSystemMessageProvider;
@@ -21,6 +24,11 @@ public class Importer {
 
     private MessageAcceptor target;
 
+    /**
+     * Fingerprints of the basenames as of their last import, if the source is a {@link FingerprintingMessageProvider}.
+     */
+    private final Map<String, String> importedFingerprints = new HashMap<String, String>();
+
 
     public Importer(File basePath, MessageAcceptor target) {
 
@@ -53,4 +61,26 @@ public class Importer {
         // TODO think about basenames that exist in target but not in source
 
     }
+
+
+    /**
+     * Imports only the basenames that changed since they were last imported by this instance. This requires the
+     * source to be a {@link FingerprintingMessageProvider}; unchanged basenames are skipped without reading their
+     * messages.
+     */
+    public void importChangedMessages() {
+
+        if (!(source instanceof FingerprintingMessageProvider)) {
+            throw new IllegalStateException("Importing changed messages requires a FingerprintingMessageProvider");
+        }
+
+        Map<String, String> fingerprints = ((FingerprintingMessageProvider) source).getFingerprints();
+
+        for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+            if (!entry.getValue().equals(importedFingerprints.get(entry.getKey()))) {
+                importMessages(entry.getKey());
+                importedFingerprints.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
 }
@@ -1,42 +1,201 @@
 package org.synyx.messagesource.jdbc;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Iterator;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+import org.synyx.messagesource.BulkMessageProvider;
+import org.synyx.messagesource.DeltaMessageProvider;
+import org.synyx.messagesource.FingerprintingMessageProvider;
+import org.synyx.messagesource.LookupMessageProvider;
 import org.synyx.messagesource.MessageAcceptor;
 import org.synyx.messagesource.MessageProvider;
+import org.synyx.messagesource.MessageDelta;
 import org.synyx.messagesource.Messages;
+import org.synyx.messagesource.util.LocaleCache;
 import org.synyx.messagesource.util.LocaleUtils;
 
 
 /**
  * {@link MessageProvider} implementation that reads messages out of a database. The table to be used as well as the
  * names of the columns is configurable.
+ * <p>
+ * The fingerprints of all basenames are read with a single aggregate query over the same messages that are loaded
+ * (leaving out deleted ones and unsupported languages). A fingerprint consists of the number of messages and, if a
+ * lastModifiedColumn is configured, their latest modification, which any change written updates. Without it, a hash
+ * of their content is used instead: the sum of a hash of each row, computed by the database with the functions of H2,
+ * MySQL, PostgreSQL and Oracle (see {@link #getContentHashExpression()}). For other databases the total length of keys
+ * and messages is used, so changes keeping it the same (like replacing a single character) are not detected then.
+ * <p>
+ * If a lastModifiedColumn (a timestamp) is configured, only the messages changed since a given watermark can be read
+ * (see {@link DeltaMessageProvider}). Removed messages are only part of these changes if a deletedColumn (a boolean) is
+ * configured as well and messages are removed by setting it to true and updating the lastModifiedColumn (instead of
+ * deleting the rows), which is what {@link #setMessages(String, Messages)} does then. Rows marked as deleted are
+ * ignored otherwise.
+ * <p>
+ * The lastModifiedColumn is set by the writers of the messages, {@link #setMessages(String, Messages)} uses the clock
+ * of its machine at the start of its transaction. A row can thus show up with a modification older than the latest one
+ * already read (if its transaction commits late or the clock of its writer is behind). To not miss such rows, the
+ * watermark is held back by watermarkLag milliseconds, so the changes of that period are read again with each delta.
+ * Rows whose modification is more than watermarkLag behind when they become visible are still missed; let the database
+ * set the column (e.g. using a trigger) or use a larger watermarkLag if writers can be further apart.
+ * <p>
+ * {@link #setMessages(String, Messages)} compares the given messages with the stored ones and only inserts, updates
+ * and deletes the messages that differ, in batches of batchSize statements within a single transaction (or the
+ * transaction already running). Readers thus never see a basename partially written.
+ * <p>
+ * All queries select by basename (and by key or lastModifiedColumn if used), so the table needs indexes starting with
+ * these columns. The files create_message_table_*.sql contain recommended tables for some databases. If
+ * validateSchema is set, the table is checked for these indexes on startup and warnings are logged for missing ones.
+ * <p>
+ * The messages of many (or all) basenames are read by a single query ordered by basename (see
+ * {@link BulkMessageProvider}), so initializing does not need a round trip to the database per basename. Single
+ * messages can be read by their key (or key-prefix) for all basenames at once as well (see
+ * {@link LookupMessageProvider}); an index on the key-column (or key and basename) is recommended for this.
+ * <p>
+ * If supportedLocales are set, only the messages of their languages (and the default messages without language) are
+ * read, so messages of other languages stay in the database.
+ * <p>
+ * The messages of huge basenames can be read concurrently in partitions using several connections, see partitionCount
+ * and partitionExecutor. This applies to reading single basenames as well as many or all at once.
+ * <p>
+ * Messages are read row by row without keeping the result in memory any longer than the driver does. To keep the
+ * driver from buffering large results completely, set a fetchSize (e.g. for Oracle or PostgreSQL, the latter only
+ * within a transaction) or enable streamResults for MySQL (which uses its row-by-row streaming mode). Neither applies
+ * to the statements writing messages.
  * 
  * @author Marc Kannegießer - kannegiesser@synyx.de
  */
-public class JdbcMessageProvider implements MessageProvider, MessageAcceptor {
+public class JdbcMessageProvider implements BulkMessageProvider, LookupMessageProvider, FingerprintingMessageProvider,
+        DeltaMessageProvider, MessageAcceptor, InitializingBean {
+
+    private static final Log LOG = LogFactory.getLog(JdbcMessageProvider.class);
 
     protected static final String QUERY_INSERT_MESSAGE =
             "INSERT INTO %s (%s, %s, %s, %s, %s, %s) VALUES (?, ?, ?, ?, ?, ?)";
     protected static final String QUERY_DELETE_MESSAGES = "DELETE FROM %s WHERE %s = ?";
+    protected static final String QUERY_DELETE_MESSAGE =
+            "DELETE FROM %s WHERE %s = ? AND %s = ? AND %s = ? AND %s = ? AND %s = ?";
+    protected static final String QUERY_UPDATE_MESSAGE =
+            "UPDATE %s SET %s WHERE %s = ? AND %s = ? AND %s = ? AND %s = ? AND %s = ?";
+    protected static final String QUERY_NORMALIZE_MESSAGE =
+            "UPDATE %1$s SET %3$s = COALESCE(%3$s, ''), %4$s = COALESCE(%4$s, ''), %5$s = COALESCE(%5$s, '') "
+                    + "WHERE %2$s = ? AND %6$s = ? AND COALESCE(%3$s, '') = ? AND COALESCE(%4$s, '') = ? "
+                    + "AND COALESCE(%5$s, '') = ?";
+    protected static final String QUERY_SELECT_STORED_MESSAGES = "SELECT %s,%s,%s,%s,%s,%s FROM %s WHERE %s = ?";
     protected static final String QUERY_SELECT_BASENAMES = "SELECT DISTINCT %s from %s";
     protected static final String QUERY_SELECT_MESSAGES = "SELECT %s,%s,%s,%s,%s FROM %s WHERE %s = ?";
+    protected static final String QUERY_INSERT_MESSAGE_WITH_MODIFICATION =
+            "INSERT INTO %s (%s, %s, %s, %s, %s, %s, %s) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    protected static final String QUERY_SELECT_ALL_MESSAGES = "SELECT %s,%s,%s,%s,%s,%s FROM %s";
+    protected static final String QUERY_CONDITION_BASENAMES = "%s IN (%s)";
+    protected static final String QUERY_CONDITION_LANGUAGES_IN = "%s IN (%s)";
+    protected static final String QUERY_SELECT_LANGUAGE_COUNTS = "SELECT %s, %s, COUNT(*) FROM %s";
+    protected static final String QUERY_SELECT_KEY_PREFIX_COUNTS =
+            "SELECT SUBSTR(%s, 1, 1), COUNT(*) FROM %s WHERE %s = ?";
+    protected static final String QUERY_GROUP_BY_KEY_PREFIX = " GROUP BY SUBSTR(%s, 1, 1) ORDER BY 1";
+    protected static final String QUERY_CONDITION_KEY = "%s = ?";
+    protected static final String QUERY_CONDITION_KEY_PREFIX = "%s LIKE ? ESCAPE '!'";
+    protected static final String QUERY_CONDITION_KEY_FROM = "%s >= ?";
+    protected static final String QUERY_CONDITION_KEY_BELOW = "(%s IS NULL OR %s < ?)";
+    protected static final String QUERY_CONDITION_NOT_DELETED = "(%s IS NULL OR %s = ?)";
+    protected static final String QUERY_CONDITION_LANGUAGES = "(%s IS NULL OR %s = '' OR %s IN (%s))";
+    protected static final String QUERY_SELECT_WATERMARK = "SELECT MAX(%s) FROM %s";
+    protected static final String QUERY_SELECT_DELTA =
+            "SELECT %s,%s,%s,%s,%s,%s,%s,%s FROM %s WHERE %s >= ? ORDER BY %s";
+    protected static final String QUERY_SELECT_FINGERPRINTS = "SELECT %s, COUNT(*), %s FROM %s";
+    protected static final String QUERY_FINGERPRINT_LENGTH =
+            "SUM(COALESCE(LENGTH(%4$s), 0) + COALESCE(LENGTH(%5$s), 0))";
+    protected static final String QUERY_FINGERPRINT_LAST_MODIFIED = "MAX(%s)";
+
+    /**
+     * Hashes of the content of a basename by database product name. The arguments are the language, country, variant,
+     * key and message column.
+     */
+    private static final Map<String, String> CONTENT_HASHES = new HashMap<String, String>();
+
+    static {
+        // the hex digits of the hash without its letters, so the digits make up a number
+        CONTENT_HASHES.put("H2", "SUM(CAST(SUBSTRING(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(CAST(HASH("
+            + "'SHA256', STRINGTOUTF8(CONCAT(COALESCE(%1$s, ''), CHAR(1), COALESCE(%2$s, ''), CHAR(1), "
+            + "COALESCE(%3$s, ''), CHAR(1), COALESCE(%4$s, ''), CHAR(1), COALESCE(%5$s, ''))), 1) AS VARCHAR), "
+            + "'a', ''), 'b', ''), 'c', ''), 'd', ''), 'e', ''), 'f', ''), 1, 15) AS DECIMAL))");
+        CONTENT_HASHES.put("MySQL", "SUM(CRC32(CONCAT_WS(CHAR(0), COALESCE(%1$s, ''), COALESCE(%2$s, ''), "
+            + "COALESCE(%3$s, ''), COALESCE(%4$s, ''), COALESCE(%5$s, ''))))");
+        CONTENT_HASHES.put("PostgreSQL", "SUM(('x' || SUBSTR(MD5(CONCAT_WS(CHR(1), %1$s, %2$s, %3$s, %4$s, %5$s)), "
+            + "1, 15))::BIT(60)::BIGINT)");
+        CONTENT_HASHES.put("Oracle", "SUM(ORA_HASH(%1$s || CHR(1) || %2$s || CHR(1) || %3$s || CHR(1) || %4$s "
+            + "|| CHR(1) || %5$s))");
+    }
+
+    /**
+     * Statements inserting or updating a message by database product name. The arguments are the table, the columns
+     * written, their values, the assignments updating an existing row and the columns of the unique key.
+     */
+    private static final Map<String, String> UPSERTS = new HashMap<String, String>();
+
+    /**
+     * Assignment of a column from the inserted row by database product name, see {@link #UPSERTS}. Not needed for
+     * H2, whose MERGE writes all given columns.
+     */
+    private static final Map<String, String> UPSERT_ASSIGNMENTS = new HashMap<String, String>();
+
+    static {
+        UPSERTS.put("H2", "MERGE INTO %1$s (%2$s) KEY (%5$s) VALUES (%3$s)");
+        UPSERTS.put("MySQL", "INSERT INTO %1$s (%2$s) VALUES (%3$s) ON DUPLICATE KEY UPDATE %4$s");
+        UPSERTS.put("PostgreSQL", "INSERT INTO %1$s (%2$s) VALUES (%3$s) ON CONFLICT (%5$s) DO UPDATE SET %4$s");
+        UPSERT_ASSIGNMENTS.put("MySQL", "%1$s = VALUES(%1$s)");
+        UPSERT_ASSIGNMENTS.put("PostgreSQL", "%1$s = EXCLUDED.%1$s");
+    }
 
     private JdbcTemplate template;
 
+    /**
+     * Template for the statements writing messages, which must not use the fetch settings of the reading template.
+     */
+    private JdbcTemplate updateTemplate;
+
     private String languageColumn = "language";
     private String countryColumn = "country";
     private String variantColumn = "variant";
@@ -44,146 +203,1409 @@ public class JdbcMessageProvider implements MessageProvider, MessageAcceptor {
     private String keyColumn = "key";
     private String messageColumn = "message";
     private String tableName = "Message";
+    private String lastModifiedColumn = null;
+    private String deletedColumn = null;
 
     private String delimiter = "`";
+    private int fetchSize = 0;
+    private boolean streamResults = false;
+    private Set<Locale> supportedLocales = null;
+    private Set<String> supportedLanguages = null;
+
+    private int batchSize = 1000;
+    private boolean validateSchema = false;
+    private int partitionCount = 1;
+    private Executor partitionExecutor = null;
+    private long watermarkLag = 60000;
+
+    private volatile String databaseProductName;
+    private volatile Boolean uniqueMessageKey;
 
     private final MessageExtractor extractor = new MessageExtractor();
+    private TransactionTemplate transactionTemplate;
 
 
     /*
      * (non-Javadoc)
      * 
-     * @see org.synyx.messagesource.MessageProvider#getMessages(java.lang.String)
+     * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
      */
-    public Messages getMessages(String basename) {
+    public void afterPropertiesSet() {
 
-        String query =
-                String.format(getSelectMessagesQuery(), addDelimiter(languageColumn), addDelimiter(countryColumn),
-                        addDelimiter(variantColumn), addDelimiter(keyColumn), addDelimiter(messageColumn),
-                        addDelimiter(tableName), addDelimiter(basenameColumn));
+        if (validateSchema) {
+            for (String problem : validateSchema()) {
+                LOG.warn(problem);
+            }
+        }
+    }
+
+
+    /**
+     * Checks that the table and all configured columns exist and that the indexes needed by the queries exist.
+     * 
+     * @return descriptions of all problems found, empty if there are none
+     */
+    public List<String> validateSchema() {
+
+        return template.execute(new ConnectionCallback<List<String>>() {
+
+            public List<String> doInConnection(Connection con) throws SQLException, DataAccessException {
+
+                return validateSchema(new MessageTableInspector(con.getMetaData(), tableName));
+            }
+        });
+    }
+
+
+    private List<String> validateSchema(MessageTableInspector table) {
+
+        List<String> problems = new ArrayList<String>();
+
+        if (!table.exists()) {
+            problems.add(String.format("Table %s for messages does not exist", tableName));
+
+            return problems;
+        }
+
+        List<String> columns =
+                new ArrayList<String>(Arrays.asList(basenameColumn, languageColumn, countryColumn, variantColumn,
+                        keyColumn, messageColumn));
+
+        if (lastModifiedColumn != null) {
+            columns.add(lastModifiedColumn);
+        }
+
+        if (deletedColumn != null) {
+            columns.add(deletedColumn);
+        }
+
+        for (String column : columns) {
+            if (!table.hasColumn(column)) {
+                problems.add(String.format("Column %s does not exist in table %s", column, tableName));
+            }
+        }
 
-        return template.query(query, new Object[] { basename }, extractor);
+        if (!table.hasIndexStartingWith(basenameColumn)) {
+            problems.add(String.format("No index on table %s starts with column %s, reading and writing the messages "
+                    + "of a basename scans the whole table", tableName, basenameColumn));
+        }
+
+        if (!table.hasIndexStartingWith(keyColumn)) {
+            problems.add(String.format("No index on table %s starts with column %s, reading messages on demand scans "
+                    + "the whole table", tableName, keyColumn));
+        }
+
+        if (lastModifiedColumn != null && !table.hasIndexStartingWith(lastModifiedColumn)) {
+            problems.add(String.format("No index on table %s starts with column %s, reading changed messages scans "
+                    + "the whole table", tableName, lastModifiedColumn));
+        }
+
+        return problems;
     }
 
 
     /*
      * (non-Javadoc)
      * 
-     * @see org.synyx.messagesource.MessageAcceptor#setMessages(java.lang.String, org.synyx.messagesource.Messages)
+     * @see org.synyx.messagesource.MessageProvider#getMessages(java.lang.String)
      */
-    public void setMessages(String basename, Messages messages) {
+    public Messages getMessages(String basename) {
 
-        deleteMessages(basename);
+        if (isPartitioned()) {
+            Messages messages = getPartitionedMessages(Collections.singletonList(basename)).get(basename);
 
-        String query =
-                String.format(getInsertMessageQuery(), addDelimiter(tableName), addDelimiter(basenameColumn),
-                        addDelimiter(languageColumn), addDelimiter(countryColumn), addDelimiter(variantColumn),
-                        addDelimiter(keyColumn), addDelimiter(messageColumn));
+            return messages != null ? messages : new Messages();
+        }
 
-        for (Locale locale : messages.getLocales()) {
+        return selectBasenameMessages(basename, null, Collections.emptyList());
+    }
+
+
+    private boolean isPartitioned() {
+
+        return partitionExecutor != null && partitionCount > 1;
+    }
+
+
+    /**
+     * Reads the messages of the given basenames (or all if null) with a query per partition, running concurrently
+     * using the partitionExecutor. Basenames are split by language and huge languages by ranges of keys, so that all
+     * partitions have about the same number of messages (see {@link #getPartitions(Collection)}).
+     */
+    private Map<String, Messages> getPartitionedMessages(Collection<String> basenames) {
+
+        List<FutureTask<Map<String, Messages>>> tasks = new ArrayList<FutureTask<Map<String, Messages>>>();
+
+        for (final Partition partition : getPartitions(basenames)) {
+            FutureTask<Map<String, Messages>> task = new FutureTask<Map<String, Messages>>(
+                    new Callable<Map<String, Messages>>() {
+
+                        public Map<String, Messages> call() {
+
+                            return selectPartition(partition);
+                        }
+                    });
+
+            partitionExecutor.execute(task);
+            tasks.add(task);
+        }
+
+        Map<String, Messages> messages = new LinkedHashMap<String, Messages>();
+
+        try {
+            for (FutureTask<Map<String, Messages>> task : tasks) {
+                // runs the partition in this thread unless the executor already started it, so waiting never
+                // deadlocks even if this runs on a thread of the partitionExecutor itself (e.g. when initializing
+                // basenames concurrently on the same pool)
+                task.run();
+                mergeMessages(messages, task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading messages of basenames " + basenames, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            for (FutureTask<Map<String, Messages>> task : tasks) {
+                task.cancel(true);
+            }
+        }
+
+        return messages;
+    }
+
+
+    /**
+     * Merges the given messages of a partition into the given messages.
+     */
+    private void mergeMessages(Map<String, Messages> messages, Map<String, Messages> partition) {
+
+        for (Map.Entry<String, Messages> entry : partition.entrySet()) {
+            Messages basenameMessages = messages.get(entry.getKey());
+
+            if (basenameMessages == null) {
+                messages.put(entry.getKey(), entry.getValue());
+
+                continue;
+            }
+
+            for (Locale locale : entry.getValue().getLocales()) {
+                Map<String, String> existing = basenameMessages.getMessages(locale);
+
+                // distinct languages may still end up as the same locale (e.g. null and empty)
+                if (existing == null) {
+                    basenameMessages.setMessages(locale, entry.getValue().getMessages(locale));
+                } else {
+                    existing.putAll(entry.getValue().getMessages(locale));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Distributes the messages of the given basenames (or all if null) over at most partitionCount partitions of about
+     * the same number of messages. Basenames with fewer messages than a partition should hold are kept whole, others
+     * are split by language, and languages with more messages than a partition should hold by ranges of keys (see
+     * {@link #getKeyRanges(String, String, int)}). The parts are assigned largest first, each to the partition with
+     * the fewest messages so far. Missing languages (null) are read as part of the empty language.
+     */
+    private List<Partition> getPartitions(Collection<String> basenames) {
+
+        Map<String, Map<String, Long>> counts = getLanguageCounts(basenames);
+        long total = 0;
+
+        for (Map<String, Long> languageCounts : counts.values()) {
+            for (Long count : languageCounts.values()) {
+                total += count;
+            }
+        }
+
+        long target = Math.max(1, (total + partitionCount - 1) / partitionCount);
+        List<PartitionPart> parts = new ArrayList<PartitionPart>();
+
+        for (Map.Entry<String, Map<String, Long>> basename : counts.entrySet()) {
+            long basenameCount = 0;
+
+            for (Long count : basename.getValue().values()) {
+                basenameCount += count;
+            }
+
+            if (basenameCount <= target) {
+                parts.add(new PartitionPart(basename.getKey(), null, null, null, basenameCount));
+
+                continue;
+            }
+
+            for (Map.Entry<String, Long> language : basename.getValue().entrySet()) {
+                long count = language.getValue();
+
+                if (count <= target) {
+                    parts.add(new PartitionPart(basename.getKey(), language.getKey(), null, null, count));
+
+                    continue;
+                }
+
+                List<String> bounds = getKeyRanges(basename.getKey(), language.getKey(),
+                        (int) Math.min(partitionCount, (count + target - 1) / target));
+
+                for (int i = 0; i <= bounds.size(); i++) {
+                    parts.add(new PartitionPart(basename.getKey(), language.getKey(), i > 0 ? bounds.get(i - 1) : null,
+                            i < bounds.size() ? bounds.get(i) : null, count / (bounds.size() + 1)));
+                }
+            }
+        }
+
+        Collections.sort(parts, new Comparator<PartitionPart>() {
+
+            public int compare(PartitionPart first, PartitionPart second) {
+
+                return first.count < second.count ? 1 : (first.count > second.count ? -1 : 0);
+            }
+        });
+
+        List<Partition> partitions = new ArrayList<Partition>();
+
+        for (int i = 0; i < Math.min(partitionCount, parts.size()); i++) {
+            partitions.add(new Partition());
+        }
 
-            insert(query, basename, LocaleUtils.getLanguage(locale), LocaleUtils.getCountry(locale),
-                    LocaleUtils.getVariant(locale), messages.getMessages(locale));
+        for (PartitionPart part : parts) {
+            Partition smallest = partitions.get(0);
 
+            for (Partition partition : partitions) {
+                if (partition.count < smallest.count) {
+                    smallest = partition;
+                }
+            }
+
+            smallest.add(part);
         }
 
+        return partitions;
     }
 
 
-    private void insert(String query, final String basename, final String language, final String country,
-            final String variant, final Map<String, String> messages) {
+    /**
+     * Returns the number of messages by basename and language of the given basenames (or all if null).
+     */
+    private Map<String, Map<String, Long>> getLanguageCounts(Collection<String> basenames) {
+
+        StringBuilder query =
+                new StringBuilder(String.format(getSelectLanguageCountsQuery(), addDelimiter(basenameColumn),
+                        addDelimiter(languageColumn), addDelimiter(tableName)));
+        List<Object> args = new ArrayList<Object>();
+        String conjunction = " WHERE ";
+
+        if (basenames != null) {
+            query.append(conjunction).append(
+                    String.format(QUERY_CONDITION_BASENAMES, addDelimiter(basenameColumn),
+                            getPlaceholders(basenames.size())));
+            args.addAll(basenames);
+            conjunction = " AND ";
+        }
+
+        appendFilters(query, args, conjunction);
+        query.append(" GROUP BY ").append(addDelimiter(basenameColumn)).append(", ").append(
+                addDelimiter(languageColumn));
+
+        final Map<String, Map<String, Long>> counts = new LinkedHashMap<String, Map<String, Long>>();
 
-        final Iterator<Map.Entry<String, String>> messagesIterator = messages.entrySet().iterator();
+        template.query(query.toString(), args.toArray(), new RowCallbackHandler() {
 
-        template.batchUpdate(query, new BatchPreparedStatementSetter() {
+            public void processRow(ResultSet rs) throws SQLException {
 
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                String basename = rs.getString(1);
+                String language = nullToEmpty(rs.getString(2));
+                Map<String, Long> languageCounts = counts.get(basename);
 
-                Map.Entry<String, String> entry = messagesIterator.next();
-                ps.setString(1, basename);
-                ps.setString(2, language);
-                ps.setString(3, country);
-                ps.setString(4, variant);
-                ps.setString(5, entry.getKey());
-                ps.setString(6, entry.getValue());
+                if (languageCounts == null) {
+                    languageCounts = new HashMap<String, Long>();
+                    counts.put(basename, languageCounts);
+                }
 
+                Long count = languageCounts.get(language);
+                languageCounts.put(language, rs.getLong(3) + (count != null ? count : 0));
             }
+        });
 
+        return counts;
+    }
 
-            public int getBatchSize() {
 
-                return messages.size();
+    /**
+     * Splits the keys of the given language of a basename into at most the given number of ranges of about the same
+     * number of messages, by the number of messages per first character of their keys (in the order of the database,
+     * so the ranges always cover all keys). Keys starting with the same character are never split.
+     *
+     * @return  the keys the ranges after the first start with, in ascending order (empty if the keys cannot be split)
+     */
+    private List<String> getKeyRanges(String basename, String language, int count) {
+
+        List<String> languages = Collections.singletonList(language);
+        StringBuilder query =
+                new StringBuilder(String.format(getSelectKeyPrefixCountsQuery(), addDelimiter(keyColumn),
+                        addDelimiter(tableName), addDelimiter(basenameColumn)));
+        List<Object> args = new ArrayList<Object>();
+        args.add(basename);
+        query.append(" AND ").append(getLanguageCondition(languages));
+        args.addAll(languages);
+        appendFilters(query, args, " AND ");
+        query.append(String.format(QUERY_GROUP_BY_KEY_PREFIX, addDelimiter(keyColumn)));
+
+        final List<String> prefixes = new ArrayList<String>();
+        final List<Long> prefixCounts = new ArrayList<Long>();
+        final long[] nullCount = new long[1];
+
+        template.query(query.toString(), args.toArray(), new RowCallbackHandler() {
+
+            public void processRow(ResultSet rs) throws SQLException {
+
+                String prefix = rs.getString(1);
+
+                // keys that are null are part of the first range
+                if (prefix == null) {
+                    nullCount[0] += rs.getLong(2);
+                } else {
+                    prefixes.add(prefix);
+                    prefixCounts.add(rs.getLong(2));
+                }
             }
         });
 
+        long total = nullCount[0];
+
+        for (Long prefixCount : prefixCounts) {
+            total += prefixCount;
+        }
+
+        List<String> bounds = new ArrayList<String>();
+        long assigned = nullCount[0];
+
+        for (int i = 0; i < prefixes.size() && bounds.size() < count - 1; i++) {
+            // a new range starts once the current one holds its share of the messages
+            if (assigned > 0 && assigned >= (bounds.size() + 1) * total / count) {
+                bounds.add(prefixes.get(i));
+            }
+
+            assigned += prefixCounts.get(i);
+        }
+
+        return bounds;
+    }
+
+
+    /**
+     * Reads the messages of the given partition: its whole basenames with a single query, parts of others with a query
+     * per basename (and range of keys).
+     */
+    private Map<String, Messages> selectPartition(Partition partition) {
+
+        Map<String, Messages> messages = new LinkedHashMap<String, Messages>();
+
+        if (!partition.basenames.isEmpty()) {
+            mergeMessages(messages, selectMessages(partition.basenames, null, Collections.emptyList()));
+        }
+
+        for (Map.Entry<String, List<String>> languages : partition.languages.entrySet()) {
+            mergeMessages(messages, selectMessages(Collections.singletonList(languages.getKey()),
+                    getLanguageCondition(languages.getValue()), languages.getValue()));
+        }
+
+        for (PartitionPart range : partition.ranges) {
+            List<String> languages = Collections.singletonList(range.language);
+            StringBuilder condition = new StringBuilder(getLanguageCondition(languages));
+            List<Object> args = new ArrayList<Object>(languages);
+
+            if (range.from != null) {
+                condition.append(" AND ").append(String.format(QUERY_CONDITION_KEY_FROM, addDelimiter(keyColumn)));
+                args.add(range.from);
+            }
+
+            if (range.below != null) {
+                condition.append(" AND ").append(
+                        String.format(QUERY_CONDITION_KEY_BELOW, addDelimiter(keyColumn), addDelimiter(keyColumn)));
+                args.add(range.below);
+            }
+
+            mergeMessages(messages, selectMessages(Collections.singletonList(range.basename), condition.toString(),
+                    args));
+        }
+
+        return messages;
+    }
+
+
+    private String getLanguageCondition(List<String> languages) {
+
+        String condition =
+                String.format(QUERY_CONDITION_LANGUAGES_IN, addDelimiter(languageColumn),
+                        getPlaceholders(languages.size()));
+
+        if (languages.contains("")) {
+            return String.format("(%s IS NULL OR %s)", addDelimiter(languageColumn), condition);
+        }
+
+        return condition;
+    }
+
+
+    /**
+     * Selects the messages of a basename. If a condition is given, it is added to the query using the given arguments.
+     */
+    private Messages selectBasenameMessages(String basename, String condition, List<?> conditionArgs) {
+
+        StringBuilder query =
+                new StringBuilder(String.format(getSelectMessagesQuery(), addDelimiter(languageColumn),
+                        addDelimiter(countryColumn), addDelimiter(variantColumn), addDelimiter(keyColumn),
+                        addDelimiter(messageColumn), addDelimiter(tableName), addDelimiter(basenameColumn)));
+        List<Object> args = new ArrayList<Object>();
+        args.add(basename);
+
+        if (condition != null) {
+            query.append(" AND ").append(condition);
+            args.addAll(conditionArgs);
+        }
+
+        appendFilters(query, args, " AND ");
+
+        return template.query(query.toString(), args.toArray(), extractor);
     }
 
 
     /*
      * (non-Javadoc)
      * 
-     * @see org.synyx.messagesource.MessageProvider#getAvailableBaseNames()
+     * @see org.synyx.messagesource.BulkMessageProvider#getAllMessages()
      */
-    public List<String> getAvailableBaseNames() {
+    public Map<String, Messages> getAllMessages() {
 
-        List<String> basenames =
-                template.queryForList(
-                        String.format(getSelectBasenamesQuery(), addDelimiter(basenameColumn), addDelimiter(tableName)),
-                        String.class);
-        return basenames;
+        if (isPartitioned()) {
+            return getPartitionedMessages(null);
+        }
+
+        return selectMessages(null, null, Collections.emptyList());
+    }
+
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.synyx.messagesource.BulkMessageProvider#getMessages(java.util.Collection)
+     */
+    public Map<String, Messages> getMessages(Collection<String> basenames) {
+
+        if (basenames.isEmpty()) {
+            return new HashMap<String, Messages>();
+        }
+
+        if (isPartitioned()) {
+            return getPartitionedMessages(basenames);
+        }
+
+        return selectMessages(basenames, null, Collections.emptyList());
+    }
+
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.synyx.messagesource.LookupMessageProvider#getMessagesByCode(java.util.Collection, java.lang.String)
+     */
+    public Map<String, Messages> getMessagesByCode(Collection<String> basenames, String code) {
+
+        if (basenames.isEmpty()) {
+            return new HashMap<String, Messages>();
+        }
+
+        return selectMessages(basenames, String.format(QUERY_CONDITION_KEY, addDelimiter(keyColumn)),
+                Collections.singletonList(code));
+    }
+
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.synyx.messagesource.LookupMessageProvider#getMessagesByCodePrefix(java.util.Collection,
+     * java.lang.String, int)
+     */
+    public Map<String, Messages> getMessagesByCodePrefix(Collection<String> basenames, String codePrefix,
+            int maxMessages) {
+
+        if (basenames.isEmpty()) {
+            return new HashMap<String, Messages>();
+        }
+
+        // the prefix must not contain wildcards
+        String pattern = codePrefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+
+        return selectMessages(basenames, String.format(QUERY_CONDITION_KEY_PREFIX, addDelimiter(keyColumn)),
+                Collections.singletonList(pattern), maxMessages);
+    }
+
+
+    /**
+     * Selects the messages of the given basenames (or all if null) with a single query ordered by basename. If a
+     * condition is given, it is added to the query using the given arguments.
+     */
+    private Map<String, Messages> selectMessages(Collection<String> basenames, String condition,
+            List<?> conditionArgs) {
+
+        return selectMessages(basenames, condition, conditionArgs, 0);
+    }
+
+
+    /**
+     * Selects the messages like {@link #selectMessages(Collection, String, List)}, but reads at most the given number
+     * of messages (if positive) and returns null if there are more.
+     */
+    private Map<String, Messages> selectMessages(Collection<String> basenames, String condition,
+            List<?> conditionArgs, final int maxMessages) {
+
+        StringBuilder query =
+                new StringBuilder(String.format(getSelectAllMessagesQuery(), addDelimiter(basenameColumn),
+                        addDelimiter(languageColumn), addDelimiter(countryColumn), addDelimiter(variantColumn),
+                        addDelimiter(keyColumn), addDelimiter(messageColumn), addDelimiter(tableName)));
+        List<Object> args = new ArrayList<Object>();
+        String conjunction = " WHERE ";
+
+        if (basenames != null) {
+            query.append(conjunction).append(
+                    String.format(QUERY_CONDITION_BASENAMES, addDelimiter(basenameColumn),
+                            getPlaceholders(basenames.size())));
+            args.addAll(basenames);
+            conjunction = " AND ";
+        }
+
+        if (condition != null) {
+            query.append(conjunction).append(condition);
+            args.addAll(conditionArgs);
+            conjunction = " AND ";
+        }
+
+        appendFilters(query, args, conjunction);
+        query.append(" ORDER BY ").append(addDelimiter(basenameColumn));
+
+        if (maxMessages <= 0) {
+            return template.query(query.toString(), args.toArray(), new BulkExtractor());
+        }
+
+        final String sql = query.toString();
+        final Object[] sqlArgs = args.toArray();
+
+        return template.query(new PreparedStatementCreator() {
+
+                public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+
+                    PreparedStatement ps = con.prepareStatement(sql);
+
+                    // one more row than allowed tells there are too many, without the database returning all of them
+                    ps.setMaxRows(maxMessages + 1);
+
+                    for (int i = 0; i < sqlArgs.length; i++) {
+                        StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, sqlArgs[i]);
+                    }
+
+                    return ps;
+                }
+            }, new BulkExtractor(maxMessages));
+    }
+
+
+    /**
+     * Appends the conditions leaving out deleted messages and messages of unsupported languages (if configured) to the
+     * given query and their arguments to the given arguments.
+     */
+    private void appendFilters(StringBuilder query, List<Object> args, String conjunction) {
+
+        if (deletedColumn != null) {
+            query.append(conjunction).append(
+                    String.format(QUERY_CONDITION_NOT_DELETED, addDelimiter(deletedColumn),
+                            addDelimiter(deletedColumn)));
+            args.add(Boolean.FALSE);
+            conjunction = " AND ";
+        }
+
+        if (supportedLanguages != null) {
+            query.append(conjunction).append(
+                    String.format(QUERY_CONDITION_LANGUAGES, addDelimiter(languageColumn),
+                            addDelimiter(languageColumn), addDelimiter(languageColumn),
+                            getPlaceholders(supportedLanguages.size())));
+            args.addAll(supportedLanguages);
+        }
+    }
+
+
+    private String getPlaceholders(int count) {
+
+        String[] placeholders = new String[count];
+        Arrays.fill(placeholders, "?");
+
+        return StringUtils.arrayToCommaDelimitedString(placeholders);
+    }
+
+
+    /**
+     * Returns true if a lastModifiedColumn is configured: without it changes cannot be read, so this is then used
+     * like a plain {@link FingerprintingMessageProvider}.
+     * 
+     * @see org.synyx.messagesource.DeltaMessageProvider#supportsDelta()
+     */
+    public boolean supportsDelta() {
+
+        return lastModifiedColumn != null;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.synyx.messagesource.DeltaMessageProvider#getWatermark()
+     */
+    public long getWatermark() {
+
+        assertLastModifiedColumn();
+
+        String query =
+                String.format(getSelectWatermarkQuery(), addDelimiter(lastModifiedColumn), addDelimiter(tableName));
+
+        Timestamp watermark = template.queryForObject(query, Timestamp.class);
+
+        // held back, so rows committed late with an older modification are read with the next delta
+        return watermark != null ? watermark.getTime() - watermarkLag : 0;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.synyx.messagesource.DeltaMessageProvider#getMessageDelta(long)
+     */
+    public MessageDelta getMessageDelta(long watermark) {
+
+        assertLastModifiedColumn();
+
+        // without a deleted-column all rows are selected as not deleted
+        String deleted = deletedColumn != null ? addDelimiter(deletedColumn) : "NULL";
+
+        String query =
+                String.format(getSelectDeltaQuery(), addDelimiter(basenameColumn), addDelimiter(languageColumn),
+                        addDelimiter(countryColumn), addDelimiter(variantColumn), addDelimiter(keyColumn),
+                        addDelimiter(messageColumn), addDelimiter(lastModifiedColumn), deleted,
+                        addDelimiter(tableName), addDelimiter(lastModifiedColumn), addDelimiter(lastModifiedColumn));
+
+        return template.query(query, new Object[] { new Timestamp(watermark) }, new DeltaExtractor(watermark));
+    }
+
+
+    private void assertLastModifiedColumn() {
+
+        if (lastModifiedColumn == null) {
+            throw new IllegalStateException("Reading changed messages requires a lastModifiedColumn to be set");
+        }
+    }
+
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.synyx.messagesource.MessageAcceptor#setMessages(java.lang.String, org.synyx.messagesource.Messages)
+     */
+    public void setMessages(final String basename, final Messages messages) {
+
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+
+                writeMessages(basename, messages);
+            }
+        });
+    }
+
+
+    /**
+     * Compares the given messages with the stored ones and writes only the differences. Missing parts of the
+     * {@link Locale} are written as empty strings, so that the statements can match rows by the primary key.
+     */
+    private void writeMessages(String basename, Messages messages) {
+
+        Map<List<String>, StoredMessage> stored = readStoredMessages(basename);
+
+        // each row consists of language, country, variant, key and message
+        List<String[]> added = new ArrayList<String[]>();
+        List<String[]> changed = new ArrayList<String[]>();
+        List<String[]> removed = new ArrayList<String[]>();
+
+        // rows stored with null as parts of the locale (by former versions) are normalized before being written
+        List<Object[]> normalized = new ArrayList<Object[]>();
+        int count = 0;
+
+        for (Locale locale : messages.getLocales()) {
+            String language = LocaleUtils.getLanguage(locale);
+            String country = LocaleUtils.getCountry(locale);
+            String variant = LocaleUtils.getVariant(locale);
+
+            for (Map.Entry<String, String> entry : messages.getMessages(locale).entrySet()) {
+                String[] row = new String[] { language, country, variant, entry.getKey(), entry.getValue() };
+                StoredMessage current = stored.remove(Arrays.asList(language, country, variant, entry.getKey()));
+                count++;
+
+                if (current == null) {
+                    added.add(row);
+                } else if (current.deleted || !ObjectUtils.nullSafeEquals(current.message, entry.getValue())) {
+                    changed.add(row);
+
+                    if (current.nullLocale) {
+                        normalized.add(getNormalizeArguments(basename, row));
+                    }
+                }
+            }
+        }
+
+        for (StoredMessage message : stored.values()) {
+            if (!message.deleted) {
+                removed.add(message.row);
+
+                if (message.nullLocale) {
+                    normalized.add(getNormalizeArguments(basename, message.row));
+                }
+            }
+        }
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        String upsertQuery = getUpsertQuery();
+
+        if (upsertQuery != null) {
+            added.addAll(changed);
+            changed.clear();
+        }
+
+        // without a deleted-column, a basename without messages is deleted at once
+        if (deletedColumn == null && count == 0 && !removed.isEmpty()) {
+            updateTemplate.update(String.format(getDeleteMessagesQuery(), addDelimiter(tableName),
+                    addDelimiter(basenameColumn)), basename);
+
+            return;
+        }
+
+        batchUpdate(getNormalizeQuery(), normalized);
+        batchUpdate(getDeleteQuery(), getDeleteArguments(basename, removed, now));
+        batchUpdate(getUpdateQuery(), getUpdateArguments(basename, changed, now));
+        batchUpdate(upsertQuery != null ? upsertQuery : getInsertQuery(), getInsertArguments(basename, added, now));
+    }
+
+
+    /**
+     * Reads all stored messages of the basename (including ones marked as deleted) by language, country, variant and
+     * key, with missing parts of the {@link Locale} as empty strings.
+     */
+    private Map<List<String>, StoredMessage> readStoredMessages(String basename) {
+
+        // without a deleted-column all rows are selected as not deleted
+        String deleted = deletedColumn != null ? addDelimiter(deletedColumn) : "NULL";
+
+        String query =
+                String.format(getSelectStoredMessagesQuery(), addDelimiter(languageColumn),
+                        addDelimiter(countryColumn), addDelimiter(variantColumn), addDelimiter(keyColumn),
+                        addDelimiter(messageColumn), deleted, addDelimiter(tableName), addDelimiter(basenameColumn));
+
+        final Map<List<String>, StoredMessage> stored = new HashMap<List<String>, StoredMessage>();
+
+        template.query(query, new Object[] { basename }, new RowCallbackHandler() {
+
+            public void processRow(ResultSet rs) throws SQLException {
+
+                String language = rs.getString(1);
+                String country = rs.getString(2);
+                String variant = rs.getString(3);
+                boolean nullLocale = language == null || country == null || variant == null;
+
+                String[] row =
+                        new String[] { nullToEmpty(language), nullToEmpty(country), nullToEmpty(variant),
+                                rs.getString(4), null };
+
+                stored.put(Arrays.asList(row).subList(0, 4),
+                        new StoredMessage(row, rs.getString(5), rs.getBoolean(6), nullLocale));
+            }
+        });
+
+        return stored;
+    }
+
+
+    private static String nullToEmpty(String value) {
+
+        return value != null ? value : "";
+    }
+
+
+    private static Object[] getNormalizeArguments(String basename, String[] row) {
+
+        return new Object[] { basename, row[3], row[0], row[1], row[2] };
+    }
+
+
+    private List<Object[]> getInsertArguments(String basename, List<String[]> rows, Timestamp now) {
+
+        List<Object[]> arguments = new ArrayList<Object[]>(rows.size());
+
+        for (String[] row : rows) {
+            List<Object> args = new ArrayList<Object>();
+            args.add(basename);
+            args.addAll(Arrays.asList((Object[]) row));
+
+            if (lastModifiedColumn != null) {
+                args.add(now);
+            }
+
+            arguments.add(args.toArray());
+        }
+
+        return arguments;
+    }
+
+
+    private List<Object[]> getUpdateArguments(String basename, List<String[]> rows, Timestamp now) {
+
+        List<Object[]> arguments = new ArrayList<Object[]>(rows.size());
+
+        for (String[] row : rows) {
+            List<Object> args = new ArrayList<Object>();
+            args.add(row[4]);
+
+            if (lastModifiedColumn != null) {
+                args.add(now);
+            }
+
+            if (deletedColumn != null) {
+                args.add(Boolean.FALSE);
+            }
+
+            args.add(basename);
+            args.addAll(Arrays.asList((Object[]) row).subList(0, 4));
+            arguments.add(args.toArray());
+        }
+
+        return arguments;
+    }
+
+
+    private List<Object[]> getDeleteArguments(String basename, List<String[]> rows, Timestamp now) {
+
+        List<Object[]> arguments = new ArrayList<Object[]>(rows.size());
+
+        for (String[] row : rows) {
+            List<Object> args = new ArrayList<Object>();
+
+            // messages are only marked as deleted if there is a deleted-column, so the removal is part of the delta
+            if (deletedColumn != null) {
+                args.add(Boolean.TRUE);
+
+                if (lastModifiedColumn != null) {
+                    args.add(now);
+                }
+            }
+
+            args.add(basename);
+            args.addAll(Arrays.asList((Object[]) row).subList(0, 4));
+            arguments.add(args.toArray());
+        }
+
+        return arguments;
+    }
+
+
+    private String getInsertQuery() {
+
+        if (lastModifiedColumn == null) {
+            return formatInsertQuery(getInsertMessageQuery());
+        }
+
+        return String.format(getInsertMessageWithModificationQuery(), addDelimiter(tableName),
+                addDelimiter(basenameColumn), addDelimiter(languageColumn), addDelimiter(countryColumn),
+                addDelimiter(variantColumn), addDelimiter(keyColumn), addDelimiter(messageColumn),
+                addDelimiter(lastModifiedColumn));
+    }
+
+
+    private String formatInsertQuery(String query) {
+
+        return String.format(query, addDelimiter(tableName), addDelimiter(basenameColumn),
+                addDelimiter(languageColumn), addDelimiter(countryColumn), addDelimiter(variantColumn),
+                addDelimiter(keyColumn), addDelimiter(messageColumn), addDelimiter(lastModifiedColumn));
+    }
+
+
+    private String getNormalizeQuery() {
+
+        return String.format(getNormalizeMessageQuery(), addDelimiter(tableName), addDelimiter(basenameColumn),
+                addDelimiter(languageColumn), addDelimiter(countryColumn), addDelimiter(variantColumn),
+                addDelimiter(keyColumn));
+    }
+
+
+    /**
+     * Returns the statement inserting or updating a message, either the one given by
+     * {@link #getUpsertMessageQuery()} or the one of the database detected if the table has a unique key on the
+     * columns identifying a message. Returns null if there is none.
+     */
+    private String getUpsertQuery() {
+
+        String query = getUpsertMessageQuery();
+
+        if (query != null) {
+            return formatInsertQuery(query);
+        }
+
+        String productName = getDatabaseProductName();
+
+        if (!UPSERTS.containsKey(productName) || !hasUniqueMessageKey()) {
+            return null;
+        }
+
+        List<String> columns =
+                new ArrayList<String>(Arrays.asList(addDelimiter(basenameColumn), addDelimiter(languageColumn),
+                        addDelimiter(countryColumn), addDelimiter(variantColumn), addDelimiter(keyColumn)));
+        String key = StringUtils.collectionToDelimitedString(columns, ", ");
+        List<String> values = new ArrayList<String>(Collections.nCopies(columns.size(), "?"));
+        List<String> assignments = new ArrayList<String>();
+
+        List<String> writtenColumns = new ArrayList<String>();
+        writtenColumns.add(messageColumn);
+
+        if (lastModifiedColumn != null) {
+            writtenColumns.add(lastModifiedColumn);
+        }
+
+        // rows written again are not deleted anymore
+        if (deletedColumn != null) {
+            writtenColumns.add(deletedColumn);
+        }
+
+        String assignment = UPSERT_ASSIGNMENTS.get(productName);
+
+        for (String column : writtenColumns) {
+            columns.add(addDelimiter(column));
+            values.add(column.equals(deletedColumn) ? "FALSE" : "?");
+
+            if (assignment != null) {
+                assignments.add(String.format(assignment, addDelimiter(column)));
+            }
+        }
+
+        return String.format(UPSERTS.get(productName), addDelimiter(tableName),
+                StringUtils.collectionToDelimitedString(columns, ", "),
+                StringUtils.collectionToDelimitedString(values, ", "),
+                StringUtils.collectionToDelimitedString(assignments, ", "), key);
+    }
+
+
+    /**
+     * Returns whether the table has a unique key on basename, language, country, variant and key (read once).
+     */
+    private boolean hasUniqueMessageKey() {
+
+        Boolean unique = uniqueMessageKey;
+
+        if (unique == null) {
+            unique = template.execute(new ConnectionCallback<Boolean>() {
+
+                public Boolean doInConnection(Connection con) throws SQLException, DataAccessException {
+
+                    MessageTableInspector table = new MessageTableInspector(con.getMetaData(), tableName);
+
+                    return table.hasUniqueKey(basenameColumn, languageColumn, countryColumn, variantColumn,
+                            keyColumn);
+                }
+            });
+            uniqueMessageKey = unique;
+        }
+
+        return unique;
+    }
+
+
+    private String getUpdateQuery() {
+
+        StringBuilder assignments = new StringBuilder(addDelimiter(messageColumn)).append(" = ?");
+
+        if (lastModifiedColumn != null) {
+            assignments.append(", ").append(addDelimiter(lastModifiedColumn)).append(" = ?");
+        }
+
+        if (deletedColumn != null) {
+            assignments.append(", ").append(addDelimiter(deletedColumn)).append(" = ?");
+        }
+
+        return String.format(getUpdateMessageQuery(), addDelimiter(tableName), assignments,
+                addDelimiter(basenameColumn), addDelimiter(languageColumn), addDelimiter(countryColumn),
+                addDelimiter(variantColumn), addDelimiter(keyColumn));
+    }
+
+
+    private String getDeleteQuery() {
+
+        if (deletedColumn == null) {
+            return String.format(getDeleteMessageQuery(), addDelimiter(tableName), addDelimiter(basenameColumn),
+                    addDelimiter(languageColumn), addDelimiter(countryColumn), addDelimiter(variantColumn),
+                    addDelimiter(keyColumn));
+        }
+
+        StringBuilder assignments = new StringBuilder(addDelimiter(deletedColumn)).append(" = ?");
+
+        if (lastModifiedColumn != null) {
+            assignments.append(", ").append(addDelimiter(lastModifiedColumn)).append(" = ?");
+        }
+
+        return String.format(getUpdateMessageQuery(), addDelimiter(tableName), assignments,
+                addDelimiter(basenameColumn), addDelimiter(languageColumn), addDelimiter(countryColumn),
+                addDelimiter(variantColumn), addDelimiter(keyColumn));
+    }
+
+
+    /**
+     * Executes the given query for all the given arguments in batches of at most batchSize statements.
+     */
+    private void batchUpdate(String query, final List<Object[]> rows) {
+
+        for (int start = 0; start < rows.size(); start += batchSize) {
+            final List<Object[]> batch = rows.subList(start, Math.min(start + batchSize, rows.size()));
+
+            updateTemplate.batchUpdate(query, new BatchPreparedStatementSetter() {
+
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+
+                    Object[] args = batch.get(i);
+
+                    for (int j = 0; j < args.length; j++) {
+                        if (args[j] == null) {
+                            ps.setNull(j + 1, Types.VARCHAR);
+                        } else {
+                            ps.setObject(j + 1, args[j]);
+                        }
+                    }
+                }
+
+
+                public int getBatchSize() {
+
+                    return batch.size();
+                }
+            });
+        }
+    }
+
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.synyx.messagesource.MessageProvider#getAvailableBaseNames()
+     */
+    public List<String> getAvailableBaseNames() {
+
+        List<String> basenames =
+                template.queryForList(
+                        String.format(getSelectBasenamesQuery(), addDelimiter(basenameColumn), addDelimiter(tableName)),
+                        String.class);
+        return basenames;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.synyx.messagesource.FingerprintingMessageProvider#getFingerprints()
+     */
+    public Map<String, String> getFingerprints() {
+
+        String aggregates;
+
+        // every change written updates the lastModifiedColumn, so the content does not need to be hashed
+        if (lastModifiedColumn != null) {
+            aggregates = String.format(QUERY_FINGERPRINT_LAST_MODIFIED, addDelimiter(lastModifiedColumn));
+        } else {
+            String contentHash = getContentHashExpression();
+            aggregates =
+                    String.format(contentHash != null ? contentHash : QUERY_FINGERPRINT_LENGTH,
+                            addDelimiter(languageColumn), addDelimiter(countryColumn), addDelimiter(variantColumn),
+                            addDelimiter(keyColumn), addDelimiter(messageColumn));
+        }
+
+        StringBuilder query =
+                new StringBuilder(String.format(getSelectFingerprintsQuery(), addDelimiter(basenameColumn),
+                        aggregates, addDelimiter(tableName)));
+        List<Object> args = new ArrayList<Object>();
+
+        // the same messages as loaded, so changes of ignored ones do not cause reloading
+        appendFilters(query, args, " WHERE ");
+        query.append(" GROUP BY ").append(addDelimiter(basenameColumn));
+
+        final Map<String, String> fingerprints = new HashMap<String, String>();
+
+        template.query(query.toString(), args.toArray(), new RowCallbackHandler() {
+
+            public void processRow(ResultSet rs) throws SQLException {
+
+                StringBuilder fingerprint = new StringBuilder();
+                int columns = rs.getMetaData().getColumnCount();
+
+                for (int i = 2; i <= columns; i++) {
+                    fingerprint.append(rs.getString(i)).append(':');
+                }
+
+                fingerprints.put(rs.getString(1), fingerprint.toString());
+            }
+        });
+
+        return fingerprints;
+    }
+
+
+    /**
+     * Returns the query used to select messages of a basename
+     * 
+     * @return the query
+     */
+    protected String getSelectMessagesQuery() {
+
+        return QUERY_SELECT_MESSAGES;
+    }
+
+
+    /**
+     * Returns the query used to select the messages of many basenames. It has to select the basename, language,
+     * country, variant, key and message (in this order); conditions and ordering are appended to it.
+     * 
+     * @return the query
+     */
+    protected String getSelectAllMessagesQuery() {
+
+        return QUERY_SELECT_ALL_MESSAGES;
+    }
+
+
+    /**
+     * Returns the query used to select the number of messages by basename and language, used to partition reading
+     * messages. It has to select the basename, language and count (in this order); conditions and grouping by basename
+     * and language are appended to it.
+     * 
+     * @return the query
+     */
+    protected String getSelectLanguageCountsQuery() {
+
+        return QUERY_SELECT_LANGUAGE_COUNTS;
+    }
+
+
+    /**
+     * Returns the query used to select the number of messages of a basename by the first character of their keys,
+     * used to split huge languages into ranges of keys. It has to select the first character and the count (in this
+     * order); conditions, grouping and ordering are appended to it.
+     * 
+     * @return the query
+     */
+    protected String getSelectKeyPrefixCountsQuery() {
+
+        return QUERY_SELECT_KEY_PREFIX_COUNTS;
+    }
+
+
+    /**
+     * Returns the query used for selecting available basenames.
+     * 
+     * @return the query
+     */
+    protected String getSelectBasenamesQuery() {
+
+        return QUERY_SELECT_BASENAMES;
+    }
+
+
+    /**
+     * Returns the query used for selecting the current watermark (the latest modification).
+     * 
+     * @return the query
+     */
+    protected String getSelectWatermarkQuery() {
+
+        return QUERY_SELECT_WATERMARK;
+    }
+
+
+    /**
+     * Returns the query used for selecting messages changed since a watermark, ordered by modification.
+     * 
+     * @return the query
+     */
+    protected String getSelectDeltaQuery() {
+
+        return QUERY_SELECT_DELTA;
+    }
+
+
+    /**
+     * Returns the query used for selecting the fingerprints of all basenames. It is formatted with the basename
+     * column, the aggregates making up the fingerprint and the table; conditions and grouping by basename are
+     * appended to it. It has to return the basename in the first column, and any number of further columns that make
+     * up the fingerprint.
+     * 
+     * @return the query
+     */
+    protected String getSelectFingerprintsQuery() {
+
+        return QUERY_SELECT_FINGERPRINTS;
+    }
+
+
+    /**
+     * Returns the aggregate expression hashing the content of a basename for its fingerprint, or null to use the total
+     * length of keys and messages instead. Only used if there is no lastModifiedColumn. It is formatted with the
+     * language, country, variant, key and message column (in this order, usable as %1$s to %5$s). By default the sum
+     * of a hash of each row is returned for H2, MySQL, PostgreSQL and Oracle (detected by the product name of the
+     * database), which does not depend on the order of the rows and does not build any large values; override this to
+     * use a checksum-function of another database.
+     * 
+     * @return the expression or null
+     */
+    protected String getContentHashExpression() {
+
+        return CONTENT_HASHES.get(getDatabaseProductName());
+    }
+
+
+    /**
+     * Returns the product name of the database (read once).
+     */
+    private String getDatabaseProductName() {
+
+        String productName = databaseProductName;
+
+        if (productName == null) {
+            productName = template.execute(new ConnectionCallback<String>() {
+
+                public String doInConnection(Connection con) throws SQLException, DataAccessException {
+
+                    return con.getMetaData().getDatabaseProductName();
+                }
+            });
+            databaseProductName = productName;
+        }
+
+        return productName;
+    }
+
+
+    /**
+     * Returns the Query-Template used to insert a Message
+     * 
+     * @return the query
+     */
+    protected String getInsertMessageQuery() {
+
+        return QUERY_INSERT_MESSAGE;
+    }
+
+
+    /**
+     * Returns the Query-Template used to insert a Message including the point in time it was last modified
+     * 
+     * @return the query
+     */
+    protected String getInsertMessageWithModificationQuery() {
+
+        return QUERY_INSERT_MESSAGE_WITH_MODIFICATION;
     }
 
 
-    private void deleteMessages(final String basename) {
+    /**
+     * Returns the query to delete all Messages of a basename, used if all Messages of a basename are removed and there
+     * is no deletedColumn
+     * 
+     * @return the query
+     */
+    protected String getDeleteMessagesQuery() {
+
+        return QUERY_DELETE_MESSAGES;
+    }
 
-        String query = String.format(getDeleteMessagesQuery(), addDelimiter(tableName), addDelimiter(basenameColumn));
 
-        template.update(query, basename);
+    /**
+     * Returns the query to delete a single Message by basename, language, country, variant and key
+     * 
+     * @return the query
+     */
+    protected String getDeleteMessageQuery() {
 
+        return QUERY_DELETE_MESSAGE;
     }
 
 
     /**
-     * Returns the query used to select messages of a basename
+     * Returns the Query-Template used to replace null as language, country or variant of a single Message by empty
+     * strings before it is updated or deleted. The placeholders are the table, the basename, language, country,
+     * variant and key column, the arguments are basename, key, language, country and variant.
      * 
      * @return the query
      */
-    protected String getSelectMessagesQuery() {
+    protected String getNormalizeMessageQuery() {
 
-        return QUERY_SELECT_MESSAGES;
+        return QUERY_NORMALIZE_MESSAGE;
     }
 
 
     /**
-     * Returns the query used for selecting available basenames.
+     * Returns the Query-Template used to update a single Message. The second placeholder takes the assignments, the
+     * others the table and the columns identifying the message (basename, language, country, variant and key).
      * 
      * @return the query
      */
-    protected String getSelectBasenamesQuery() {
+    protected String getUpdateMessageQuery() {
 
-        return QUERY_SELECT_BASENAMES;
+        return QUERY_UPDATE_MESSAGE;
     }
 
 
     /**
-     * Returns the Query-Template used to insert a Message
+     * Returns the query used to select all stored messages of a basename (language, country, variant, key, message
+     * and deleted-flag) when writing messages.
      * 
      * @return the query
      */
-    protected String getInsertMessageQuery() {
+    protected String getSelectStoredMessagesQuery() {
 
-        return QUERY_INSERT_MESSAGE;
+        return QUERY_SELECT_STORED_MESSAGES;
     }
 
 
     /**
-     * Returns the query to delete Messages
+     * Returns the Query-Template used to insert or update a Message in a single statement, or null (the default) to
+     * use the statement of the database detected: MERGE for H2, INSERT ... ON DUPLICATE KEY UPDATE for MySQL and
+     * INSERT ... ON CONFLICT for PostgreSQL. These are only used if the table has a unique key on basename, language,
+     * country, variant and key (as the tables of the create_message_table_*.sql scripts), otherwise new and changed
+     * Messages are inserted and updated separately.
+     * <p>
+     * The template takes the same placeholders and arguments as {@link #getInsertMessageQuery()}; if a
+     * lastModifiedColumn is configured, it is passed as eighth placeholder and its value as seventh argument. Override
+     * this for other databases, e.g.:
      * 
-     * @return the query
+     * <pre>
+     * MERGE INTO %s (%s, %s, %s, %s, %s, %s) KEY (%2$s, %3$s, %4$s, %5$s, %6$s) VALUES (?, ?, ?, ?, ?, ?)
+     * </pre>
+     * 
+     * If a deletedColumn is used, the statement has to reset it for existing rows as well.
+     * 
+     * @return the query or null
      */
-    protected String getDeleteMessagesQuery() {
+    protected String getUpsertMessageQuery() {
 
-        return QUERY_DELETE_MESSAGES;
+        return null;
     }
 
 
@@ -275,7 +1697,161 @@ public class JdbcMessageProvider implements MessageProvider, MessageAcceptor {
     public void setDataSource(DataSource dataSource) {
 
         Assert.notNull(dataSource);
-        this.template = new JdbcTemplate(dataSource);
+        this.databaseProductName = null;
+        this.uniqueMessageKey = null;
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.updateTemplate = new JdbcTemplate(dataSource);
+        this.template = new JdbcTemplate(dataSource) {
+
+            @Override
+            protected void applyStatementSettings(Statement stmt) throws SQLException {
+
+                super.applyStatementSettings(stmt);
+
+                // MySQL only streams results for this (otherwise invalid) fetch size
+                if (streamResults) {
+                    stmt.setFetchSize(Integer.MIN_VALUE);
+                } else if (fetchSize > 0) {
+                    stmt.setFetchSize(fetchSize);
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Returns the number of rows fetched from the database at once when reading messages (0 if the driver decides).
+     * 
+     * @return the fetch size
+     */
+    public int getFetchSize() {
+
+        return fetchSize;
+    }
+
+
+    /**
+     * Sets the number of rows fetched from the database at once when reading messages. Defaults to 0, which leaves it
+     * to the driver (some drivers read the whole result into memory then).
+     * 
+     * @param fetchSize the fetch size, must not be negative
+     */
+    public void setFetchSize(int fetchSize) {
+
+        Assert.isTrue(fetchSize >= 0, "fetchSize must not be negative");
+        this.fetchSize = fetchSize;
+    }
+
+
+    /**
+     * Returns the maximum number of partitions messages are read in concurrently.
+     * 
+     * @return the number of partitions
+     */
+    public int getPartitionCount() {
+
+        return partitionCount;
+    }
+
+
+    /**
+     * Sets the maximum number of partitions messages are read in concurrently if a partitionExecutor is set, both for
+     * a single basename and for many basenames at once. Small basenames are read whole, others are split by language
+     * and huge languages by ranges of keys (by their first character, so keys starting with the same character are
+     * always read together). Defaults to 1, which reads the messages with a single query.
+     * 
+     * @param partitionCount the number of partitions, must be positive
+     */
+    public void setPartitionCount(int partitionCount) {
+
+        Assert.isTrue(partitionCount > 0, "partitionCount must be positive");
+        this.partitionCount = partitionCount;
+    }
+
+
+    /**
+     * Sets the {@link Executor} used to read partitions concurrently (see partitionCount). Each partition uses its own
+     * connection, so the {@link DataSource} should be able to provide that many. Defaults to null, which reads messages
+     * with a single query. Partitions the executor did not start yet when they are waited for are read by the waiting
+     * thread itself, so the same pool may be used as initializationExecutor of the InitializableMessageSource without
+     * deadlocking.
+     * 
+     * @param partitionExecutor the {@link Executor} or null
+     */
+    public void setPartitionExecutor(Executor partitionExecutor) {
+
+        this.partitionExecutor = partitionExecutor;
+    }
+
+
+    /**
+     * Returns whether the table is checked for the columns and indexes needed on startup.
+     * 
+     * @return true if the table is checked
+     */
+    public boolean isValidateSchema() {
+
+        return validateSchema;
+    }
+
+
+    /**
+     * Sets whether the table is checked for the columns and indexes needed on startup (see {@link #validateSchema()}).
+     * Problems are logged as warnings only. Defaults to false.
+     * 
+     * @param validateSchema true to check the table
+     */
+    public void setValidateSchema(boolean validateSchema) {
+
+        this.validateSchema = validateSchema;
+    }
+
+
+    /**
+     * Returns the maximum number of statements sent to the database in a single batch when writing messages.
+     * 
+     * @return the batch size
+     */
+    public int getBatchSize() {
+
+        return batchSize;
+    }
+
+
+    /**
+     * Sets the maximum number of statements sent to the database in a single batch when writing messages. All batches
+     * of a basename are written within a single transaction. Defaults to 1000.
+     * 
+     * @param batchSize the batch size, must be positive
+     */
+    public void setBatchSize(int batchSize) {
+
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * Returns whether results are streamed row by row using the MySQL-specific fetch size {@link Integer#MIN_VALUE}.
+     * 
+     * @return true if results are streamed
+     */
+    public boolean isStreamResults() {
+
+        return streamResults;
+    }
+
+
+    /**
+     * Sets whether results are streamed row by row using the fetch size {@link Integer#MIN_VALUE}, which is how MySQL
+     * is told not to read the whole result into memory. Other drivers may reject this, use fetchSize for them. Takes
+     * precedence over fetchSize and defaults to false.
+     * 
+     * @param streamResults true to stream results
+     */
+    public void setStreamResults(boolean streamResults) {
+
+        this.streamResults = streamResults;
     }
 
 
@@ -396,6 +1972,144 @@ public class JdbcMessageProvider implements MessageProvider, MessageAcceptor {
         this.messageColumn = messageColumn;
     }
 
+    /**
+     * Returns the name of the column holding the point in time a message was last modified (timestamp-type) or null if
+     * there is none.
+     * 
+     * @return the name of the last-modified-column or null
+     */
+    public String getLastModifiedColumn() {
+
+        return lastModifiedColumn;
+    }
+
+
+    /**
+     * Sets the name of the column holding the point in time a message was last modified (timestamp-type). This is
+     * optional and enables reading only the messages that changed since a given watermark.
+     * 
+     * @param lastModifiedColumn the name of the last-modified-column or null if there is none
+     */
+    public void setLastModifiedColumn(String lastModifiedColumn) {
+
+        this.lastModifiedColumn = lastModifiedColumn;
+    }
+
+
+    /**
+     * Returns the name of the column marking a message as deleted (boolean-type) or null if there is none.
+     * 
+     * @return the name of the deleted-column or null
+     */
+    public String getDeletedColumn() {
+
+        return deletedColumn;
+    }
+
+
+    /**
+     * Sets the name of the column marking a message as deleted (boolean-type). This is optional; if set, messages
+     * marked as deleted are ignored and reported as removed when reading changed messages.
+     * 
+     * @param deletedColumn the name of the deleted-column or null if there is none
+     */
+    public void setDeletedColumn(String deletedColumn) {
+
+        this.deletedColumn = deletedColumn;
+    }
+
+
+    /**
+     * Returns the time in milliseconds the watermark is held back behind the latest modification read.
+     * 
+     * @return the lag in milliseconds
+     */
+    public long getWatermarkLag() {
+
+        return watermarkLag;
+    }
+
+
+    /**
+     * Sets the time in milliseconds the watermark is held back behind the latest modification read (defaults to one
+     * minute). Rows becoming visible with a modification up to this much older than the latest one read before are
+     * still reported as changes; the changes of this period are read again with each delta. It has to cover the
+     * longest transaction writing messages plus the largest difference between the clocks of the writers.
+     * 
+     * @param watermarkLag the lag in milliseconds
+     */
+    public void setWatermarkLag(long watermarkLag) {
+
+        Assert.isTrue(watermarkLag >= 0, "watermarkLag must not be negative");
+        this.watermarkLag = watermarkLag;
+    }
+
+    /**
+     * Returns the {@link Locale}s whose messages are read or null if messages of all {@link Locale}s are read.
+     * 
+     * @return the supported {@link Locale}s or null
+     */
+    public Set<Locale> getSupportedLocales() {
+
+        return supportedLocales;
+    }
+
+
+    /**
+     * Sets the {@link Locale}s whose messages are read. Only their languages are considered: all messages of these
+     * languages are read (e.g. de_AT for de_DE) as well as the default messages without language. Make sure the
+     * language of the defaultLocale of the MessageSource is among them. Defaults to null, which reads all messages.
+     * 
+     * @param supportedLocales the {@link Locale}s to read messages for or null to read all of them
+     */
+    public void setSupportedLocales(Collection<Locale> supportedLocales) {
+
+        if (supportedLocales == null) {
+            this.supportedLocales = null;
+            this.supportedLanguages = null;
+
+            return;
+        }
+
+        Assert.notEmpty(supportedLocales, "supportedLocales must not be empty, use null to support all locales");
+
+        Set<String> languages = new HashSet<String>();
+
+        for (Locale locale : supportedLocales) {
+            languages.add(LocaleUtils.getLanguage(locale));
+        }
+
+        this.supportedLocales = new HashSet<Locale>(supportedLocales);
+        this.supportedLanguages = languages;
+    }
+
+
+    private boolean isSupported(String language) {
+
+        return supportedLanguages == null || language == null || language.length() == 0
+                || supportedLanguages.contains(language);
+    }
+
+    /**
+     * A message as stored in the database, used to determine what has to be written
+     **/
+    static class StoredMessage {
+
+        private final String[] row;
+        private final String message;
+        private final boolean deleted;
+        private final boolean nullLocale;
+
+
+        public StoredMessage(String[] row, String message, boolean deleted, boolean nullLocale) {
+
+            this.row = row;
+            this.message = message;
+            this.deleted = deleted;
+            this.nullLocale = nullLocale;
+        }
+    }
+
     /**
      * Helper that extracts messages from a resultset
      **/
@@ -409,16 +2123,18 @@ public class JdbcMessageProvider implements MessageProvider, MessageAcceptor {
         public Messages extractData(ResultSet rs) throws SQLException, DataAccessException {
 
             Messages messages = new Messages();
+            LocaleCache locales = new LocaleCache();
 
-            while (rs.next()) {
-                String language = rs.getString(languageColumn);
-                String country = rs.getString(countryColumn);
-                String variant = rs.getString(variantColumn);
-                String key = rs.getString(keyColumn);
-                String message = rs.getString(messageColumn);
+            // the query may be overridden, so the columns are looked up by name (but only once)
+            int language = rs.findColumn(languageColumn);
+            int country = rs.findColumn(countryColumn);
+            int variant = rs.findColumn(variantColumn);
+            int key = rs.findColumn(keyColumn);
+            int message = rs.findColumn(messageColumn);
 
-                Locale locale = LocaleUtils.toLocale(language, country, variant);
-                messages.addMessage(locale, key, message);
+            while (rs.next()) {
+                Locale locale = locales.getLocale(rs.getString(language), rs.getString(country), rs.getString(variant));
+                messages.addMessage(locale, rs.getString(key), rs.getString(message));
             }
 
             return messages;
@@ -426,4 +2142,169 @@ public class JdbcMessageProvider implements MessageProvider, MessageAcceptor {
 
     }
 
+    /**
+     * Helper that extracts the messages of many basenames from a resultset ordered by basename
+     **/
+    class BulkExtractor implements ResultSetExtractor<Map<String, Messages>> {
+
+        private final int maxMessages;
+
+
+        public BulkExtractor() {
+
+            this(0);
+        }
+
+
+        /**
+         * Creates an extractor returning null if the resultset has more than the given number of rows (if positive).
+         */
+        public BulkExtractor(int maxMessages) {
+
+            this.maxMessages = maxMessages;
+        }
+
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.springframework.jdbc.core.ResultSetExtractor#extractData(java.sql.ResultSet)
+         */
+        public Map<String, Messages> extractData(ResultSet rs) throws SQLException, DataAccessException {
+
+            Map<String, Messages> messagesByBasename = new LinkedHashMap<String, Messages>();
+            LocaleCache locales = new LocaleCache();
+            String currentBasename = null;
+            Messages messages = null;
+            int count = 0;
+
+            while (rs.next()) {
+                if (maxMessages > 0 && ++count > maxMessages) {
+                    return null;
+                }
+
+                String basename = rs.getString(1);
+
+                // rows are grouped by basename, so the map is only consulted when the basename changes
+                if (messages == null || !basename.equals(currentBasename)) {
+                    currentBasename = basename;
+                    messages = messagesByBasename.get(basename);
+
+                    if (messages == null) {
+                        messages = new Messages();
+                        messagesByBasename.put(basename, messages);
+                    }
+                }
+
+                Locale locale = locales.getLocale(rs.getString(2), rs.getString(3), rs.getString(4));
+                messages.addMessage(locale, rs.getString(5), rs.getString(6));
+            }
+
+            return messagesByBasename;
+        }
+    }
+
+    /**
+     * Helper that extracts changed and removed messages from a resultset ordered by modification
+     **/
+    class DeltaExtractor implements ResultSetExtractor<MessageDelta> {
+
+        private final long watermark;
+
+
+        public DeltaExtractor(long watermark) {
+
+            this.watermark = watermark;
+        }
+
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.springframework.jdbc.core.ResultSetExtractor#extractData(java.sql.ResultSet)
+         */
+        public MessageDelta extractData(ResultSet rs) throws SQLException, DataAccessException {
+
+            MessageDelta delta = new MessageDelta(watermark);
+            LocaleCache locales = new LocaleCache();
+
+            // rows are ordered by modification, so later changes of the same message win
+            while (rs.next()) {
+                String basename = rs.getString(1);
+                String language = rs.getString(2);
+                Locale locale = locales.getLocale(language, rs.getString(3), rs.getString(4));
+                String key = rs.getString(5);
+                Timestamp lastModified = rs.getTimestamp(7);
+
+                if (!isSupported(language)) {
+                    // the query is not restricted to the supported languages, so they are left out here
+                } else if (rs.getBoolean(8)) {
+                    delta.addRemovedMessage(basename, locale, key);
+                } else {
+                    delta.addChangedMessage(basename, locale, key, rs.getString(6));
+                }
+
+                if (lastModified != null && lastModified.getTime() - watermarkLag > delta.getWatermark()) {
+                    delta.setWatermark(lastModified.getTime() - watermarkLag);
+                }
+            }
+
+            return delta;
+        }
+    }
+
+    /**
+     * Part of the messages read by a partition: a whole basename, a language of it or a range of keys of a language.
+     **/
+    static class PartitionPart {
+
+        private final String basename;
+        private final String language;
+        private final String from;
+        private final String below;
+        private final long count;
+
+
+        public PartitionPart(String basename, String language, String from, String below, long count) {
+
+            this.basename = basename;
+            this.language = language;
+            this.from = from;
+            this.below = below;
+            this.count = count;
+        }
+    }
+
+    /**
+     * The parts read by a partition, grouped by the queries needed to read them.
+     **/
+    static class Partition {
+
+        private final List<String> basenames = new ArrayList<String>();
+        private final Map<String, List<String>> languages = new LinkedHashMap<String, List<String>>();
+        private final List<PartitionPart> ranges = new ArrayList<PartitionPart>();
+        private long count;
+
+
+        public void add(PartitionPart part) {
+
+            count += part.count;
+
+            if (part.language == null) {
+                basenames.add(part.basename);
+            } else if (part.from == null && part.below == null) {
+                List<String> basenameLanguages = languages.get(part.basename);
+
+                if (basenameLanguages == null) {
+                    basenameLanguages = new ArrayList<String>();
+                    languages.put(part.basename, basenameLanguages);
+                }
+
+                basenameLanguages.add(part.language);
+            } else {
+                ranges.add(part);
+            }
+        }
+    }
+
 }
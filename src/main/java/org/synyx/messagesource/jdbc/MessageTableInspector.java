@@ -0,0 +1,212 @@
+package org.synyx.messagesource.jdbc;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/**
+ * Helper that reads the columns and indexes (including the primary key) of a table from the {@link DatabaseMetaData}.
+ * Names of columns are compared case-insensitively, since databases differ in how they store them.
+ *
+ * @author agent - agent@local
+ */
+class MessageTableInspector {
+
+    private final Set<String> columns = new HashSet<String>();
+    private final List<List<String>> indexes = new ArrayList<List<String>>();
+    private final List<Set<String>> uniqueKeys = new ArrayList<Set<String>>();
+    private final boolean exists;
+
+
+    /**
+     * Creates a new instance reading the metadata of the given table.
+     *
+     * @param metaData the {@link DatabaseMetaData} to read from
+     * @param tableName the name of the table, as configured
+     * @throws SQLException if reading the metadata fails
+     */
+    public MessageTableInspector(DatabaseMetaData metaData, String tableName) throws SQLException {
+
+        String table = findTable(metaData, tableName);
+        exists = table != null;
+
+        if (exists) {
+            readColumns(metaData, table);
+            readPrimaryKey(metaData, table);
+            readIndexes(metaData, table);
+        }
+    }
+
+
+    /**
+     * Returns whether the table exists.
+     *
+     * @return true if the table exists
+     */
+    public boolean exists() {
+
+        return exists;
+    }
+
+
+    /**
+     * Returns whether the table has a column with the given name.
+     *
+     * @param column the name of the column
+     * @return true if the column exists
+     */
+    public boolean hasColumn(String column) {
+
+        return columns.contains(column.toLowerCase());
+    }
+
+
+    /**
+     * Returns whether there is an index (or primary key) whose first columns are the given ones.
+     *
+     * @param leadingColumns the names of the columns the index has to start with (in this order)
+     * @return true if there is such an index
+     */
+    public boolean hasIndexStartingWith(String... leadingColumns) {
+
+        for (List<String> index : indexes) {
+            if (index.size() >= leadingColumns.length) {
+                boolean matches = true;
+
+                for (int i = 0; i < leadingColumns.length && matches; i++) {
+                    matches = index.get(i).equals(leadingColumns[i].toLowerCase());
+                }
+
+                if (matches) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Returns whether there is a unique index (or the primary key) on exactly the given columns, in any order.
+     *
+     * @param keyColumns the names of the columns
+     * @return true if there is such a unique key
+     */
+    public boolean hasUniqueKey(String... keyColumns) {
+
+        Set<String> key = new HashSet<String>();
+
+        for (String column : keyColumns) {
+            key.add(column.toLowerCase());
+        }
+
+        return uniqueKeys.contains(key);
+    }
+
+
+    /**
+     * Returns the name the table is stored with: as given, in upper or in lower case (depending on the database).
+     */
+    private String findTable(DatabaseMetaData metaData, String tableName) throws SQLException {
+
+        for (String candidate : new String[] { tableName, tableName.toUpperCase(), tableName.toLowerCase() }) {
+            ResultSet rs = metaData.getTables(null, null, candidate, null);
+
+            try {
+                if (rs.next()) {
+                    return candidate;
+                }
+            } finally {
+                rs.close();
+            }
+        }
+
+        return null;
+    }
+
+
+    private void readColumns(DatabaseMetaData metaData, String table) throws SQLException {
+
+        ResultSet rs = metaData.getColumns(null, null, table, null);
+
+        try {
+            while (rs.next()) {
+                columns.add(rs.getString("COLUMN_NAME").toLowerCase());
+            }
+        } finally {
+            rs.close();
+        }
+    }
+
+
+    private void readPrimaryKey(DatabaseMetaData metaData, String table) throws SQLException {
+
+        Map<Short, String> primaryKey = new TreeMap<Short, String>();
+        ResultSet rs = metaData.getPrimaryKeys(null, null, table);
+
+        try {
+            while (rs.next()) {
+                primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME").toLowerCase());
+            }
+        } finally {
+            rs.close();
+        }
+
+        if (!primaryKey.isEmpty()) {
+            indexes.add(new ArrayList<String>(primaryKey.values()));
+            uniqueKeys.add(new HashSet<String>(primaryKey.values()));
+        }
+    }
+
+
+    private void readIndexes(DatabaseMetaData metaData, String table) throws SQLException {
+
+        Map<String, Map<Short, String>> columnsByIndex = new LinkedHashMap<String, Map<Short, String>>();
+        Set<String> uniqueIndexes = new HashSet<String>();
+        ResultSet rs = metaData.getIndexInfo(null, null, table, false, true);
+
+        try {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+
+                // statistics are reported as an index without name
+                if (indexName == null || column == null) {
+                    continue;
+                }
+
+                Map<Short, String> indexColumns = columnsByIndex.get(indexName);
+
+                if (indexColumns == null) {
+                    indexColumns = new TreeMap<Short, String>();
+                    columnsByIndex.put(indexName, indexColumns);
+                }
+
+                indexColumns.put(rs.getShort("ORDINAL_POSITION"), column.toLowerCase());
+
+                if (!rs.getBoolean("NON_UNIQUE")) {
+                    uniqueIndexes.add(indexName);
+                }
+            }
+        } finally {
+            rs.close();
+        }
+
+        for (Map.Entry<String, Map<Short, String>> index : columnsByIndex.entrySet()) {
+            indexes.add(new ArrayList<String>(index.getValue().values()));
+
+            if (uniqueIndexes.contains(index.getKey())) {
+                uniqueKeys.add(new HashSet<String>(index.getValue().values()));
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.synyx.messagesource.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Thread-safe cache holding at most a given number of entries. Reading never locks. If the cache is full, entries
+ * used least recently are evicted (approximately, see below). Hits, misses and evictions are recorded in a
+ * {@link CacheStatistics}. Null keys and values are not supported.
+ *
+ * <p>The entries are held in a {@link ConcurrentHashMap}. Each entry remembers the last insertion (a counter advanced
+ * by each put) before which it was used. A read only writes this if it changed, so entries read all the time between
+ * insertions are written once per insertion, and reads of caches that are not changing write nothing at all. When the
+ * cache grows too large, the least recently used of a sample of entries is evicted. Samples are taken round-robin over
+ * all entries, continuing where the last one ended. Caches of at most {@link #SAMPLE_SIZE} entries therefore evict
+ * strictly in LRU order, larger ones evict one of the least recently used entries of the sample. Only evicting is
+ * serialized.</p>
+ *
+ * @param  <K>  the type of the keys
+ * @param  <V>  the type of the values
+ *
+ * @author  agent - agent@local
+ */
+public class BoundedConcurrentCache<K, V> {
+
+    /**
+     * The number of entries looked at to choose the one to evict.
+     */
+    static final int SAMPLE_SIZE = 16;
+
+    private final int maxSize;
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong();
+    private final CacheStatistics statistics;
+
+    /**
+     * Iterator the samples are taken from, only used while holding its lock (on this cache).
+     */
+    private Iterator<Map.Entry<K, Entry<V>>> sampler;
+
+    /**
+     * Creates a new instance recording to its own {@link CacheStatistics}.
+     *
+     * @param  maxSize  the maximum number of entries, must be positive
+     */
+    public BoundedConcurrentCache(int maxSize) {
+
+        this(maxSize, new CacheStatistics());
+    }
+
+
+    /**
+     * Creates a new instance.
+     *
+     * @param  maxSize  the maximum number of entries, must be positive
+     * @param  statistics  the {@link CacheStatistics} to record to (may be shared with other caches)
+     */
+    public BoundedConcurrentCache(int maxSize, CacheStatistics statistics) {
+
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive but was " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns the value cached for the given key or null if there is none. A hit marks the entry as used most
+     * recently.
+     *
+     * @param  key  the key
+     *
+     * @return  the cached value or null
+     */
+    public V get(K key) {
+
+        Entry<V> entry = entries.get(key);
+
+        if (entry == null) {
+            statistics.recordMiss();
+
+            return null;
+        }
+
+        statistics.recordHit();
+
+        long now = clock.get();
+
+        // only written once per insertion, so hot entries do not turn into contended cache-lines
+        if (entry.used != now) {
+            entry.used = now;
+        }
+
+        return entry.value;
+    }
+
+
+    /**
+     * Caches the given value unless there already is one for the key. Evicts entries used least recently if the
+     * cache grows too large.
+     *
+     * @param  key  the key
+     * @param  value  the value to cache
+     *
+     * @return  the value cached for the key afterwards: the given one or the one that was cached before
+     */
+    public V put(K key, V value) {
+
+        // the new entry counts as used before this insertion, reads afterwards mark entries as used after it
+        Entry<V> entry = new Entry<V>(value, clock.getAndIncrement());
+        Entry<V> existing = entries.putIfAbsent(key, entry);
+
+        if (existing != null) {
+            return existing.value;
+        }
+
+        if (size.incrementAndGet() > maxSize) {
+            evict(key);
+        }
+
+        return value;
+    }
+
+
+    /**
+     * Removes the entry of the given key.
+     *
+     * @param  key  the key
+     */
+    public void remove(K key) {
+
+        if (entries.remove(key) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * Returns the current number of entries.
+     *
+     * @return  the number of entries
+     */
+    public int size() {
+
+        return size.get();
+    }
+
+
+    /**
+     * Returns the {@link CacheStatistics} this records to.
+     *
+     * @return  the statistics
+     */
+    public CacheStatistics getStatistics() {
+
+        return statistics;
+    }
+
+
+    /**
+     * Evicts the least recently used of a sample of entries (other than the one just added) until the cache is small
+     * enough.
+     */
+    private synchronized void evict(K added) {
+
+        while (size.get() > maxSize) {
+            Map.Entry<K, Entry<V>> eldest = null;
+            int sampled = 0;
+            boolean restarted = false;
+
+            while (sampled < SAMPLE_SIZE) {
+                if (sampler == null || !sampler.hasNext()) {
+                    // a single pass over all entries at most, small caches have less entries than the sample
+                    if (restarted) {
+                        break;
+                    }
+
+                    sampler = entries.entrySet().iterator();
+                    restarted = true;
+
+                    if (!sampler.hasNext()) {
+                        break;
+                    }
+                }
+
+                Map.Entry<K, Entry<V>> candidate = sampler.next();
+
+                if (candidate.getKey().equals(added)) {
+                    continue;
+                }
+
+                sampled++;
+
+                if (eldest == null || candidate.getValue().used < eldest.getValue().used) {
+                    eldest = candidate;
+                }
+            }
+
+            if (eldest == null) {
+                return;
+            }
+
+            // fails if another thread removed or replaced the entry meanwhile, then another one is chosen
+            if (entries.remove(eldest.getKey(), eldest.getValue())) {
+                size.decrementAndGet();
+                statistics.recordEviction();
+            }
+        }
+    }
+
+    /**
+     * A cached value and the insertion before which it was used last.
+     */
+    private static final class Entry<V> {
+
+        private final V value;
+        private volatile long used;
+
+        Entry(V value, long used) {
+
+            this.value = value;
+            this.used = used;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.synyx.messagesource.util;
+
+/**
+ * Thread-safe counters of hits, misses and evictions of a cache. Recording is done on every lookup by all threads, so
+ * the counters are striped (see {@link StripedCounter}) instead of contending for a single value.
+ *
+ * @author  agent - agent@local
+ */
+public class CacheStatistics {
+
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter evictions = new StripedCounter();
+
+    /**
+     * Records a lookup that was answered by the cache.
+     */
+    public void recordHit() {
+
+        hits.increment();
+    }
+
+
+    /**
+     * Records a lookup that was not answered by the cache.
+     */
+    public void recordMiss() {
+
+        misses.increment();
+    }
+
+
+    /**
+     * Records an entry that was removed from the cache to make room for others.
+     */
+    public void recordEviction() {
+
+        evictions.increment();
+    }
+
+
+    /**
+     * Returns the number of lookups answered by the cache.
+     *
+     * @return  the number of hits
+     */
+    public long getHitCount() {
+
+        return hits.get();
+    }
+
+
+    /**
+     * Returns the number of lookups not answered by the cache.
+     *
+     * @return  the number of misses
+     */
+    public long getMissCount() {
+
+        return misses.get();
+    }
+
+
+    /**
+     * Returns the number of entries removed from the cache to make room for others.
+     *
+     * @return  the number of evictions
+     */
+    public long getEvictionCount() {
+
+        return evictions.get();
+    }
+
+
+    /**
+     * Returns the ratio of misses to all lookups or 0 if there were no lookups yet.
+     *
+     * @return  the miss-ratio between 0 and 1
+     */
+    public double getMissRatio() {
+
+        long missCount = misses.get();
+        long total = hits.get() + missCount;
+
+        return total == 0 ? 0 : (double) missCount / total;
+    }
+
+
+    @Override
+    public String toString() {
+
+        return String.format("hits=%d, misses=%d, evictions=%d", getHitCount(), getMissCount(), getEvictionCount());
+    }
+}
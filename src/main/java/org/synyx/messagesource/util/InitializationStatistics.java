@@ -0,0 +1,94 @@
+package org.synyx.messagesource.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Thread-safe counters of successful and failed (re-)initializations and their durations.
+ *
+ * @author  agent - agent@local
+ */
+public class InitializationStatistics {
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastDuration = -1;
+    private volatile RuntimeException lastFailure;
+
+    /**
+     * Records a successful initialization.
+     *
+     * @param  durationMillis  the duration of the initialization in milliseconds
+     */
+    public void recordSuccess(long durationMillis) {
+
+        successes.incrementAndGet();
+        lastDuration = durationMillis;
+    }
+
+
+    /**
+     * Records a failed initialization.
+     *
+     * @param  durationMillis  the duration until the initialization failed in milliseconds
+     * @param  failure  the error the initialization failed with
+     */
+    public void recordFailure(long durationMillis, RuntimeException failure) {
+
+        failures.incrementAndGet();
+        lastDuration = durationMillis;
+        lastFailure = failure;
+    }
+
+
+    /**
+     * Returns the number of successful initializations.
+     *
+     * @return  the number of successes
+     */
+    public long getSuccessCount() {
+
+        return successes.get();
+    }
+
+
+    /**
+     * Returns the number of failed initializations.
+     *
+     * @return  the number of failures
+     */
+    public long getFailureCount() {
+
+        return failures.get();
+    }
+
+
+    /**
+     * Returns the duration of the last initialization (successful or not) in milliseconds or -1 if there was none.
+     *
+     * @return  the duration in milliseconds
+     */
+    public long getLastDuration() {
+
+        return lastDuration;
+    }
+
+
+    /**
+     * Returns the error the last failed initialization failed with or null if there was none.
+     *
+     * @return  the last error or null
+     */
+    public RuntimeException getLastFailure() {
+
+        return lastFailure;
+    }
+
+
+    @Override
+    public String toString() {
+
+        return String.format("successes=%d, failures=%d, lastDuration=%dms", getSuccessCount(), getFailureCount(),
+                getLastDuration());
+    }
+}
@@ -0,0 +1,66 @@
+package org.synyx.messagesource.util;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Small lookup of {@link Locale}s by their language, country and variant, meant to be used while reading many
+ * messages (e.g. all rows of a query). Each distinct combination is converted by
+ * {@link LocaleUtils#toLocale(String, String, String)} only once and the same {@link Locale} instance is returned for
+ * it afterwards. Since messages usually come in runs of the same {@link Locale}, the last combination is checked
+ * before the lookup. Instances are not thread-safe.
+ *
+ * @author  agent - agent@local
+ */
+public final class LocaleCache {
+
+    private final Map<String, Locale> locales = new HashMap<String, Locale>();
+
+    private String lastLanguage;
+    private String lastCountry;
+    private String lastVariant;
+    private Locale lastLocale;
+    private boolean hasLast = false;
+
+    /**
+     * Returns the {@link Locale} for the given parts (see {@link LocaleUtils#toLocale(String, String, String)}).
+     *
+     * @param  language  the language, may be null
+     * @param  country  the country, may be null
+     * @param  variant  the variant, may be null
+     *
+     * @return  the (shared) {@link Locale} or null if all parts are null
+     */
+    public Locale getLocale(String language, String country, String variant) {
+
+        if (hasLast && equals(language, lastLanguage) && equals(country, lastCountry)
+                && equals(variant, lastVariant)) {
+            return lastLocale;
+        }
+
+        // the separator cannot be part of a language, country or variant
+        String key = language + '\u0000' + country + '\u0000' + variant;
+        Locale locale = locales.get(key);
+
+        if (locale == null && !locales.containsKey(key)) {
+            locale = LocaleUtils.toLocale(language, country, variant);
+            locales.put(key, locale);
+        }
+
+        lastLanguage = language;
+        lastCountry = country;
+        lastVariant = variant;
+        lastLocale = locale;
+        hasLast = true;
+
+        return locale;
+    }
+
+
+    private static boolean equals(String first, String second) {
+
+        return first == null ? second == null : first.equals(second);
+    }
+}
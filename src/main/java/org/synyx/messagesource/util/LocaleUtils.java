@@ -6,6 +6,7 @@ package org.synyx.messagesource.util;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.regex.Pattern;
 
 import org.springframework.beans.propertyeditors.LocaleEditor;
 import org.springframework.util.StringUtils;
@@ -18,6 +19,13 @@ import org.springframework.util.StringUtils;
  */
 public class LocaleUtils {
 
+    /**
+     * Pattern of the locale-part of a bundle-name: a language, optionally followed by a country and a variant (the
+     * country may be empty if a variant is given).
+     */
+    private static final Pattern LOCALE_SUFFIX = Pattern.compile("[a-z]{2,3}(_([A-Z]{2}|[0-9]{3}))?"
+            + "|[a-z]{2,3}_([A-Z]{2}|[0-9]{3})?_[A-Za-z0-9][A-Za-z0-9_-]*");
+
     /**
      * Prevent this from being instanciated
      */
@@ -193,4 +201,26 @@ public class LocaleUtils {
         return path;
     }
 
+
+    /**
+     * Returns the position of the underscore separating the basename from the locale within the given name of a
+     * bundle (without extension), e.g. 3 for foo_de_DE, or -1 if the name has no locale. Since basenames may contain
+     * underscores themselves (e.g. my_messages_de), the locale is the longest suffix that is a valid
+     * language_country_variant (lower case language of 2 or 3 letters, upper case country of 2 letters or 3 digits,
+     * optional variant).
+     * 
+     * @param bundleName the name of the bundle without extension
+     * @return the position of the separating underscore or -1
+     */
+    public static int getLocaleSeparator(String bundleName) {
+
+        for (int i = bundleName.indexOf('_'); i >= 0; i = bundleName.indexOf('_', i + 1)) {
+            if (i > 0 && LOCALE_SUFFIX.matcher(bundleName.substring(i + 1)).matches()) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
 }
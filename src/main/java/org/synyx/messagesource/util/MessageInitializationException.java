@@ -1,5 +1,10 @@
 package org.synyx.messagesource.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
 /**
  * Runtimeexception that indicates something went wrong with message-resolving during the initialization-phase.
  *
@@ -7,7 +12,35 @@ package org.synyx.messagesource.util;
  */
 public class MessageInitializationException extends RuntimeException {
 
+    private final List<RuntimeException> causes;
+
     public MessageInitializationException(String message, RuntimeException e) {
         super(message, e);
+
+        this.causes = Collections.singletonList(e);
+    }
+
+
+    /**
+     * Creates a new instance for several errors that occurred during initialization. The first one is used as the
+     * cause, all of them are available using {@link #getCauses()}.
+     *
+     * @param  message  the message describing the errors
+     * @param  causes  the errors, must not be empty
+     */
+    public MessageInitializationException(String message, List<RuntimeException> causes) {
+        super(message, causes.get(0));
+
+        this.causes = Collections.unmodifiableList(new ArrayList<RuntimeException>(causes));
+    }
+
+    /**
+     * Returns all errors that lead to this exception.
+     *
+     * @return  the errors
+     */
+    public List<RuntimeException> getCauses() {
+
+        return causes;
     }
 }
@@ -0,0 +1,432 @@
+package org.synyx.messagesource.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * Parser for properties-files that reads key/value-pairs straight into a {@link Map}. It follows the format of
+ * {@link Properties#load(java.io.Reader)} exactly (comments, line continuations, separators and escapes including
+ * \\uXXXX), but avoids its synchronized table, the copying into a {@link Map} afterwards and the line buffer for
+ * lines that are not continued: keys and values are created from the decoded characters directly, with a single
+ * allocation per {@link String}.
+ *
+ * <p>Files are read through a {@link FileChannel} into a buffer on the heap. They are not mapped into memory: the
+ * content is decoded into characters anyway, and a mapping stays until it is garbage-collected, keeping the file
+ * locked on Windows meanwhile. ISO-8859-1 and the ASCII part of UTF-8 are decoded without a
+ * {@link java.nio.charset.CharsetDecoder}, other bytes and encodings are decoded like an
+ * {@link java.io.InputStreamReader} does (replacing malformed input).</p>
+ *
+ * <p>Instances are not thread-safe, each parses a single content.</p>
+ *
+ * @author  agent - agent@local
+ */
+public final class PropertiesParser {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String MALFORMED_ESCAPE = "Malformed \\uxxxx encoding.";
+
+    private final char[] chars;
+    private final int end;
+
+    /**
+     * Buffer for logical lines spanning several lines.
+     */
+    private char[] lineBuffer = new char[128];
+
+    /**
+     * Buffer for keys and values containing escapes.
+     */
+    private char[] convertBuffer = new char[128];
+
+    private PropertiesParser(char[] chars, int end) {
+
+        this.chars = chars;
+        this.end = end;
+    }
+
+    /**
+     * Reads the properties of the given file.
+     *
+     * @param  file  the file to read
+     * @param  charset  the encoding of the file, null for ISO-8859-1 (as used by
+     *                   {@link Properties#load(java.io.InputStream)})
+     *
+     * @return  the properties by key
+     *
+     * @throws  IOException  if reading the file fails
+     * @throws  IllegalArgumentException  if the file contains a malformed \\uXXXX escape
+     */
+    public static Map<String, String> load(File file, Charset charset) throws IOException {
+
+        FileInputStream in = new FileInputStream(file);
+
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be read");
+            }
+
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // read until the buffer is full or the file ended (it may have been truncated meanwhile)
+            }
+
+            bytes.flip();
+
+            Map<String, String> properties = new HashMap<String, String>();
+            parse(bytes, charset, properties);
+
+            return properties;
+        } finally {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Parses the properties contained in the given bytes into the given {@link Map}. Later occurrences of a key
+     * replace earlier ones.
+     *
+     * @param  bytes  the content to parse (from its position to its limit, which is not changed)
+     * @param  charset  the encoding of the content, null for ISO-8859-1
+     * @param  target  the {@link Map} to put the properties into
+     *
+     * @throws  IllegalArgumentException  if the content contains a malformed \\uXXXX escape
+     */
+    public static void parse(ByteBuffer bytes, Charset charset, Map<String, String> target) {
+
+        CharBuffer decoded = decode(bytes, charset != null ? charset : ISO_8859_1);
+
+        parse(decoded.array(), decoded.arrayOffset() + decoded.position(), decoded.remaining(), target);
+    }
+
+
+    /**
+     * Parses the properties contained in the given characters into the given {@link Map}. Later occurrences of a key
+     * replace earlier ones.
+     *
+     * @param  chars  the characters to parse
+     * @param  offset  the index of the first character
+     * @param  length  the number of characters
+     * @param  target  the {@link Map} to put the properties into
+     *
+     * @throws  IllegalArgumentException  if the content contains a malformed \\uXXXX escape
+     */
+    public static void parse(char[] chars, int offset, int length, Map<String, String> target) {
+
+        new PropertiesParser(chars, offset + length).parse(offset, target);
+    }
+
+
+    /**
+     * Decodes the given bytes. Bytes that map to the same character in the given {@link Charset} (all for ISO-8859-1,
+     * the ASCII ones for UTF-8) are copied directly, the remainder is decoded by the {@link Charset}.
+     */
+    private static CharBuffer decode(ByteBuffer bytes, Charset charset) {
+
+        int start = bytes.position();
+        int length = bytes.remaining();
+        boolean latin1 = ISO_8859_1.equals(charset);
+        int copied = 0;
+
+        if (!latin1 && !UTF_8.equals(charset)) {
+            return charset.decode(bytes.duplicate());
+        }
+
+        char[] chars = new char[length];
+
+        while (copied < length) {
+            byte b = bytes.get(start + copied);
+
+            // bytes of multi-byte sequences have the highest bit set, so UTF-8 can be split before them
+            if (b < 0 && !latin1) {
+                break;
+            }
+
+            chars[copied++] = (char) (b & 0xFF);
+        }
+
+        if (copied == length) {
+            return CharBuffer.wrap(chars);
+        }
+
+        ByteBuffer rest = bytes.duplicate();
+        rest.position(start + copied);
+
+        CharBuffer decoded = charset.decode(rest);
+        char[] all = new char[copied + decoded.remaining()];
+        System.arraycopy(chars, 0, all, 0, copied);
+        decoded.get(all, copied, decoded.remaining());
+
+        return CharBuffer.wrap(all);
+    }
+
+
+    private void parse(int offset, Map<String, String> target) {
+
+        int pos = offset;
+
+        while (pos < end) {
+            char c = chars[pos];
+
+            // whitespace and empty lines before a natural line are skipped
+            if (c == ' ' || c == '\t' || c == '\f' || c == '\r' || c == '\n') {
+                pos++;
+            } else if (c == '#' || c == '!') {
+                // comments end with their line, even if it ends with a backslash
+                pos = findLineEnd(pos);
+            } else if (c == '\\' && findLineEnd(pos) == pos + 1) {
+                // a line continued without content is treated like the start of a new line (so it may be followed
+                // by a comment), but like Properties an empty key is read if the content ends right after it
+                if (pos + 2 >= end) {
+                    target.put("", "");
+                }
+
+                pos++;
+            } else {
+                pos = parseLine(pos, target);
+            }
+        }
+    }
+
+
+    /**
+     * Parses the logical line starting at the given position.
+     *
+     * @return  the position after the logical line
+     */
+    private int parseLine(int start, Map<String, String> target) {
+
+        int lineEnd = findLineEnd(start);
+
+        // the common case: the line is not continued, so it is parsed from the content directly
+        if (!isContinued(start, lineEnd)) {
+            put(chars, start, lineEnd, target);
+
+            return lineEnd;
+        }
+
+        int length = 0;
+        int segmentStart = start;
+        int segmentEnd = lineEnd;
+
+        while (true) {
+            boolean continued = isContinued(segmentStart, segmentEnd);
+
+            // the backslash continuing the line is dropped (as is a backslash at the end of the content)
+            int copyEnd = continued ? segmentEnd - 1 : segmentEnd;
+            ensureLineBuffer(length + copyEnd - segmentStart);
+            System.arraycopy(chars, segmentStart, lineBuffer, length, copyEnd - segmentStart);
+            length += copyEnd - segmentStart;
+
+            if (!continued || segmentEnd >= end) {
+                break;
+            }
+
+            // skip the line terminator and the whitespace at the beginning of the next line
+            int pos = segmentEnd + 1;
+
+            if (chars[segmentEnd] == '\r' && pos < end && chars[pos] == '\n') {
+                pos++;
+            }
+
+            while (pos < end && (chars[pos] == ' ' || chars[pos] == '\t' || chars[pos] == '\f')) {
+                pos++;
+            }
+
+            segmentStart = pos;
+            segmentEnd = findLineEnd(pos);
+        }
+
+        put(lineBuffer, 0, length, target);
+
+        return segmentEnd;
+    }
+
+
+    /**
+     * Returns the position of the line terminator ending the line that contains the given position or the end of the
+     * content.
+     */
+    private int findLineEnd(int pos) {
+
+        while (pos < end && chars[pos] != '\n' && chars[pos] != '\r') {
+            pos++;
+        }
+
+        return pos;
+    }
+
+
+    /**
+     * Returns whether the given line ends with an odd number of backslashes.
+     */
+    private boolean isContinued(int start, int lineEnd) {
+
+        int backslashes = 0;
+
+        for (int i = lineEnd - 1; i >= start && chars[i] == '\\'; i--) {
+            backslashes++;
+        }
+
+        return (backslashes & 1) == 1;
+    }
+
+
+    private void ensureLineBuffer(int capacity) {
+
+        if (lineBuffer.length < capacity) {
+            char[] grown = new char[Math.max(capacity, lineBuffer.length * 2)];
+            System.arraycopy(lineBuffer, 0, grown, 0, lineBuffer.length);
+            lineBuffer = grown;
+        }
+    }
+
+
+    /**
+     * Splits the given logical line into key and value and puts them into the target.
+     */
+    private void put(char[] line, int start, int limit, Map<String, String> target) {
+
+        int keyEnd = start;
+        int valueStart = limit;
+        boolean hasSeparator = false;
+        boolean precedingBackslash = false;
+
+        // the key ends at the first unescaped separator or whitespace
+        while (keyEnd < limit) {
+            char c = line[keyEnd];
+
+            if ((c == '=' || c == ':') && !precedingBackslash) {
+                valueStart = keyEnd + 1;
+                hasSeparator = true;
+
+                break;
+            } else if ((c == ' ' || c == '\t' || c == '\f') && !precedingBackslash) {
+                valueStart = keyEnd + 1;
+
+                break;
+            }
+
+            precedingBackslash = c == '\\' && !precedingBackslash;
+            keyEnd++;
+        }
+
+        // whitespace and a single separator after the key are skipped
+        while (valueStart < limit) {
+            char c = line[valueStart];
+
+            if (c != ' ' && c != '\t' && c != '\f') {
+                if (!hasSeparator && (c == '=' || c == ':')) {
+                    hasSeparator = true;
+                } else {
+                    break;
+                }
+            }
+
+            valueStart++;
+        }
+
+        target.put(convert(line, start, keyEnd), convert(line, valueStart, limit));
+    }
+
+
+    /**
+     * Creates the {@link String} of the given characters, resolving escapes.
+     */
+    private String convert(char[] line, int start, int limit) {
+
+        int escape = start;
+
+        while (escape < limit && line[escape] != '\\') {
+            escape++;
+        }
+
+        if (escape == limit) {
+            return new String(line, start, limit - start);
+        }
+
+        if (convertBuffer.length < limit - start) {
+            convertBuffer = new char[Math.max(limit - start, convertBuffer.length * 2)];
+        }
+
+        int length = escape - start;
+        System.arraycopy(line, start, convertBuffer, 0, length);
+
+        int pos = escape;
+
+        while (pos < limit) {
+            char c = line[pos++];
+
+            if (c != '\\') {
+                convertBuffer[length++] = c;
+
+                continue;
+            }
+
+            if (pos == limit) {
+                // a trailing backslash escapes nothing
+                break;
+            }
+
+            c = line[pos++];
+
+            if (c == 'u') {
+                if (pos > limit - 4) {
+                    throw new IllegalArgumentException(MALFORMED_ESCAPE);
+                }
+
+                int value = 0;
+
+                for (int i = 0; i < 4; i++) {
+                    value = (value << 4) + hexDigit(line[pos++]);
+                }
+
+                convertBuffer[length++] = (char) value;
+            } else if (c == 't') {
+                convertBuffer[length++] = '\t';
+            } else if (c == 'r') {
+                convertBuffer[length++] = '\r';
+            } else if (c == 'n') {
+                convertBuffer[length++] = '\n';
+            } else if (c == 'f') {
+                convertBuffer[length++] = '\f';
+            } else {
+                convertBuffer[length++] = c;
+            }
+        }
+
+        return new String(convertBuffer, 0, length);
+    }
+
+
+    /**
+     * Returns the value of the given hexadecimal digit, only accepting ASCII digits like {@link Properties}.
+     */
+    private static int hexDigit(char c) {
+
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+
+        throw new IllegalArgumentException(MALFORMED_ESCAPE);
+    }
+}
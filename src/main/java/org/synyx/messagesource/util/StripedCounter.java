@@ -0,0 +1,61 @@
+package org.synyx.messagesource.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Counter for values incremented by many threads at once, like the counters of {@link CacheStatistics} updated on
+ * every lookup. A single {@link java.util.concurrent.atomic.AtomicLong} would be a cache-line all threads contend for,
+ * so the count is spread over several cells on separate cache-lines, chosen by the id of the incrementing thread, and
+ * summed on read (like the LongAdder of Java 8).
+ *
+ * @author  agent - agent@local
+ */
+final class StripedCounter {
+
+    /**
+     * Distance between two cells in longs, so each cell is on its own cache-line (128 bytes covers the prefetching of
+     * adjacent lines as well).
+     */
+    private static final int STRIDE = 16;
+
+    private final int mask;
+    private final AtomicLongArray cells;
+
+    StripedCounter() {
+
+        int count = 1;
+
+        while (count < Runtime.getRuntime().availableProcessors() * 2) {
+            count *= 2;
+        }
+
+        this.mask = count - 1;
+        this.cells = new AtomicLongArray(count * STRIDE);
+    }
+
+    /**
+     * Increments the count by one.
+     */
+    void increment() {
+
+        cells.getAndIncrement(((int) Thread.currentThread().getId() & mask) * STRIDE);
+    }
+
+
+    /**
+     * Returns the sum of all increments. Increments happening concurrently may or may not be included.
+     *
+     * @return  the count
+     */
+    long get() {
+
+        long sum = 0;
+
+        for (int i = 0; i < cells.length(); i += STRIDE) {
+            sum += cells.get(i);
+        }
+
+        return sum;
+    }
+}
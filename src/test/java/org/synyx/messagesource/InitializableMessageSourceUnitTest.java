@@ -1,12 +1,27 @@
 package org.synyx.messagesource;
 
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.Assert;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.synyx.messagesource.util.MessageInitializationException;
 
 
 public class InitializableMessageSourceUnitTest {
@@ -85,4 +100,685 @@ public class InitializableMessageSourceUnitTest {
         Assert.assertEquals("bar", resolved);
     }
 
+
+    @Test
+    public void resolvesNothingBeforeInitialization() {
+
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        String resolved = messageSource.getMessage("foo", new Object[] {}, "default", Locale.GERMAN);
+        Assert.assertEquals("default", resolved);
+    }
+
+
+    @Test
+    public void reinitializationReplacesMessages() {
+
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        messageSource.initialize();
+
+        Messages newMessages = new Messages();
+        newMessages.addMessage(Locale.GERMAN, "foo", "baz");
+        Mockito.when(messageProvider.getMessages(basename)).thenReturn(newMessages);
+
+        Assert.assertEquals("bar", messageSource.getMessage("foo", new Object[] {}, Locale.GERMAN));
+        messageSource.initialize();
+        Assert.assertEquals("baz", messageSource.getMessage("foo", new Object[] {}, Locale.GERMAN));
+    }
+
+
+    @Test
+    public void resolvesBasenamesInOrder() {
+
+        Messages otherMessages = new Messages();
+        otherMessages.addMessage(Locale.GERMAN, "foo", "other");
+        otherMessages.addMessage(Locale.GERMAN, "onlyOther", "other");
+        Mockito.when(messageProvider.getMessages("other")).thenReturn(otherMessages);
+        messages.addMessage(null, "foo", "bar");
+
+        messageSource.setBasenames(Arrays.asList(basename, "other"));
+        messageSource.initialize();
+
+        Assert.assertEquals("bar", messageSource.getMessage("foo", new Object[] {}, Locale.GERMAN));
+        Assert.assertEquals("other", messageSource.getMessage("onlyOther", new Object[] {}, Locale.GERMAN));
+    }
+
+
+    @Test
+    public void recordsUnresolvedLookups() {
+
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        messageSource.initialize();
+
+        messageSource.getMessage("foo", new Object[] {}, Locale.GERMAN);
+        messageSource.getMessage("unknown", new Object[] {}, "default", Locale.GERMAN);
+        messageSource.getMessage("foo", new Object[] {}, "default", Locale.ENGLISH);
+
+        Assert.assertEquals(2, messageSource.getLookupStatistics().getHitCount());
+        Assert.assertEquals(1, messageSource.getLookupStatistics().getMissCount());
+    }
+
+
+    @Test
+    public void resolvesDistinctFormatsPerThreadWithThreadConfinedFormats() throws InterruptedException {
+
+        messages.addMessage(Locale.GERMAN, "foo", "bar {0}");
+        messageSource.initialize();
+
+        // the shared instance without thread-confinement
+        Assert.assertSame(messageSource.resolveCode("foo", Locale.GERMAN),
+            messageSource.resolveCode("foo", Locale.GERMAN));
+
+        messageSource.setThreadConfinedFormats(true);
+
+        final MessageFormat[] formats = new MessageFormat[8];
+        Thread[] threads = new Thread[formats.length];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int number = i;
+            threads[i] = new Thread(new Runnable() {
+
+                        public void run() {
+
+                            formats[number] = messageSource.resolveCode("foo", Locale.GERMAN);
+
+                            // kept for the thread
+                            if (formats[number] != messageSource.resolveCode("foo", Locale.GERMAN)) {
+                                formats[number] = null;
+                            }
+                        }
+                    });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < formats.length; i++) {
+            Assert.assertEquals("bar {0}", formats[i].toPattern());
+
+            for (int j = 0; j < i; j++) {
+                Assert.assertNotSame(formats[i], formats[j]);
+            }
+        }
+    }
+
+
+    @Test
+    public void formatsConcurrentlyWithThreadConfinedFormats() throws InterruptedException {
+
+        // choice- and date-formats keep state while formatting, so sharing them garbles the results
+        final String pattern = "{0,choice,0#none|1#one|1<{0,number,integer} items} on {1,date,yyyy-MM-dd HH:mm:ss}";
+        messages.addMessage(Locale.GERMAN, "foo", pattern);
+        messageSource.setThreadConfinedFormats(true);
+        messageSource.initialize();
+
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int number = i;
+            threads[i] = new Thread(new Runnable() {
+
+                        public void run() {
+
+                            MessageFormat reference = new MessageFormat(pattern, Locale.GERMAN);
+
+                            try {
+                                start.await();
+                            } catch (InterruptedException e) {
+                                failures.incrementAndGet();
+
+                                return;
+                            }
+
+                            for (int j = 0; j < 1000; j++) {
+                                Object[] args = new Object[] { number * j, new Date(number * 86400000L * 400 + j) };
+
+                                // formatted without any locking, as allowed for thread-confined formats
+                                String formatted = messageSource.resolveCode("foo", Locale.GERMAN).format(args);
+
+                                if (!reference.format(args).equals(formatted)) {
+                                    failures.incrementAndGet();
+                                }
+                            }
+                        }
+                    });
+            threads[i].start();
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(0, failures.get());
+    }
+
+
+    @Test
+    public void formatsMessageWithoutArguments() {
+
+        messages.addMessage(Locale.GERMAN, "foo", "it''s {0}");
+        messageSource.initialize();
+
+        Assert.assertEquals("it's {0}", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals("it's bar", messageSource.getMessage("foo", new Object[] { "bar" }, Locale.GERMAN));
+    }
+
+
+    @Test
+    public void formatsLazilyCompiledMessageWithoutArguments() {
+
+        messages.addMessage(Locale.GERMAN, "foo", "it''s");
+        messageSource.setLazyFormatCompilation(true);
+        messageSource.initialize();
+
+        Assert.assertEquals("it's", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals("it's", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals(1, messageSource.getFormatCacheStatistics().getMissCount());
+    }
+
+
+    @Test
+    public void returnsUnresolvedCodeWithoutArguments() {
+
+        messageSource.setReturnUnresolvedCode(true);
+        messageSource.initialize();
+
+        Assert.assertEquals("unknown", messageSource.getMessage("unknown", null, Locale.GERMAN));
+    }
+
+
+    @Test
+    public void compilesMessagesLazily() {
+
+        messages.addMessage(Locale.GERMAN, "foo", "bar {0}");
+        messages.addMessage(Locale.GERMAN, "invalid", "bar {0");
+        messageSource.setLazyFormatCompilation(true);
+        messageSource.initialize();
+
+        Assert.assertEquals("bar baz", messageSource.getMessage("foo", new Object[] { "baz" }, Locale.GERMAN));
+        Assert.assertEquals("bar baz", messageSource.getMessage("foo", new Object[] { "baz" }, Locale.GERMAN));
+        Assert.assertEquals(1, messageSource.getFormatCacheStatistics().getHitCount());
+    }
+
+
+    @Test(expected = MessageInitializationException.class)
+    public void validatesLazilyCompiledMessages() {
+
+        messages.addMessage(Locale.GERMAN, "invalid", "bar {0");
+        messageSource.setLazyFormatCompilation(true);
+        messageSource.initialize();
+
+        messageSource.validateMessages();
+    }
+
+
+    @Test
+    public void initializesBasenamesInParallel() {
+
+        Messages otherMessages = new Messages();
+        otherMessages.addMessage(Locale.GERMAN, "foo", "other");
+        otherMessages.addMessage(Locale.GERMAN, "onlyOther", "other");
+        Mockito.when(messageProvider.getMessages("other")).thenReturn(otherMessages);
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            messageSource.setBasenames(Arrays.asList(basename, "other"));
+            messageSource.setInitializationExecutor(executor);
+            messageSource.initialize();
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals("bar", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals("other", messageSource.getMessage("onlyOther", null, Locale.GERMAN));
+    }
+
+
+    @Test
+    public void reportsErrorsOfAllBasenames() {
+
+        Mockito.when(messageProvider.getMessages(basename)).thenThrow(new IllegalStateException("foo failed"));
+        Mockito.when(messageProvider.getMessages("other")).thenThrow(new IllegalStateException("other failed"));
+        messageSource.setBasenames(Arrays.asList(basename, "other"));
+
+        try {
+            messageSource.initialize();
+            Assert.fail("Expected MessageInitializationException");
+        } catch (MessageInitializationException e) {
+            Assert.assertEquals(2, e.getCauses().size());
+        }
+    }
+
+
+    @Test
+    public void refreshesInBackgroundAndKeepsMessagesOnFailure() throws Exception {
+
+        final AtomicReference<Messages> current = new AtomicReference<Messages>(messages);
+        messageSource.setMessageProvider(new MessageProvider() {
+
+                public Messages getMessages(String basename) {
+
+                    Messages result = current.get();
+
+                    if (result == null) {
+                        throw new IllegalStateException("unavailable");
+                    }
+
+                    return result;
+                }
+
+
+                public Collection<String> getAvailableBaseNames() {
+
+                    return Collections.singletonList(basename);
+                }
+            });
+
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        messageSource.setRefreshInterval(10);
+        messageSource.afterPropertiesSet();
+
+        try {
+            Assert.assertEquals("bar", messageSource.getMessage("foo", null, Locale.GERMAN));
+
+            current.set(null);
+            waitFor(messageSource.getInitializationStatistics().getFailureCount() + 1, true);
+            Assert.assertEquals("bar", messageSource.getMessage("foo", null, Locale.GERMAN));
+
+            Messages newMessages = new Messages();
+            newMessages.addMessage(Locale.GERMAN, "foo", "baz");
+            current.set(newMessages);
+            waitFor(messageSource.getInitializationStatistics().getSuccessCount() + 1, false);
+            Assert.assertEquals("baz", messageSource.getMessage("foo", null, Locale.GERMAN));
+        } finally {
+            messageSource.destroy();
+        }
+    }
+
+
+    @Test
+    public void reloadsSingleBasename() {
+
+        Messages otherMessages = new Messages();
+        otherMessages.addMessage(Locale.GERMAN, "other", "other");
+        Mockito.when(messageProvider.getMessages("other")).thenReturn(otherMessages);
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        messageSource.setBasenames(Arrays.asList(basename, "other"));
+        messageSource.initialize();
+
+        Messages newMessages = new Messages();
+        newMessages.addMessage(Locale.GERMAN, "foo", "baz");
+        Mockito.when(messageProvider.getMessages(basename)).thenReturn(newMessages);
+        messageSource.reload(basename);
+
+        Assert.assertEquals("baz", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals("other", messageSource.getMessage("other", null, Locale.GERMAN));
+        Mockito.verify(messageProvider, Mockito.times(2)).getMessages(basename);
+        Mockito.verify(messageProvider, Mockito.times(1)).getMessages("other");
+    }
+
+
+    @Test
+    public void reloadsChangedBasenamesByFingerprint() {
+
+        FingerprintingMessageProvider provider = Mockito.mock(FingerprintingMessageProvider.class);
+        Map<String, String> fingerprints = new HashMap<String, String>();
+        fingerprints.put(basename, "1");
+        fingerprints.put("removed", "1");
+        Mockito.when(provider.getFingerprints()).thenReturn(fingerprints);
+        Mockito.when(provider.getAvailableBaseNames()).thenReturn(fingerprints.keySet());
+        Mockito.when(provider.getMessages(basename)).thenReturn(messages);
+
+        Messages removedMessages = new Messages();
+        removedMessages.addMessage(Locale.GERMAN, "removed", "removed");
+        Mockito.when(provider.getMessages("removed")).thenReturn(removedMessages);
+
+        messageSource = new InitializableMessageSource();
+        messageSource.setMessageProvider(provider);
+        messageSource.initialize();
+
+        Map<String, String> newFingerprints = new HashMap<String, String>();
+        newFingerprints.put(basename, "2");
+        Mockito.when(provider.getFingerprints()).thenReturn(newFingerprints);
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        messageSource.reloadChanged();
+
+        Assert.assertEquals("bar", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals("default", messageSource.getMessage("removed", null, "default", Locale.GERMAN));
+        Mockito.verify(provider, Mockito.times(1)).getMessages("removed");
+    }
+
+
+    @Test
+    public void reloadingKnownBasenameUpdatesItsFingerprint() {
+
+        FingerprintingMessageProvider provider = Mockito.mock(FingerprintingMessageProvider.class);
+        Mockito.when(provider.getFingerprints()).thenReturn(Collections.singletonMap(basename, "1"));
+        Mockito.when(provider.getMessages(basename)).thenReturn(messages);
+
+        messageSource.setMessageProvider(provider);
+        messageSource.initialize();
+
+        Mockito.when(provider.getFingerprints()).thenReturn(Collections.singletonMap(basename, "2"));
+        messageSource.reload(basename);
+        messageSource.reloadChanged();
+
+        Mockito.verify(provider, Mockito.times(2)).getMessages(basename);
+    }
+
+
+    @Test
+    public void dropsResolvedViewsOnReload() {
+
+        messages.addMessage(Locale.GERMAN, "foo", "old");
+        messageSource.initialize();
+
+        Assert.assertEquals("old", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals("old", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals(1, messageSource.getResolvingPathStatistics().getMissCount());
+
+        messages.addMessage(Locale.GERMAN, "foo", "reloaded");
+        messageSource.reload(basename);
+
+        Assert.assertEquals("reloaded", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals(2, messageSource.getResolvingPathStatistics().getMissCount());
+
+        messages.addMessage(Locale.GERMAN, "foo", "initialized");
+        messageSource.initialize();
+
+        Assert.assertEquals("initialized", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals(3, messageSource.getResolvingPathStatistics().getMissCount());
+    }
+
+
+    @Test
+    public void skipsPublishingDeltaAppliedAlready() {
+
+        DeltaMessageProvider provider = Mockito.mock(DeltaMessageProvider.class);
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        Mockito.when(provider.supportsDelta()).thenReturn(true);
+        Mockito.when(provider.getWatermark()).thenReturn(1L);
+        Mockito.when(provider.getMessages(basename)).thenReturn(messages);
+
+        // read again within the lag of the watermark
+        MessageDelta delta = new MessageDelta(1);
+        delta.addChangedMessage(basename, Locale.GERMAN, "foo", "bar");
+        delta.addRemovedMessage(basename, Locale.GERMAN, "gone");
+        Mockito.when(provider.getMessageDelta(1)).thenReturn(delta);
+
+        messageSource.setMessageProvider(provider);
+        messageSource.initialize();
+        messageSource.getMessage("foo", null, Locale.GERMAN);
+        messageSource.reloadChanged();
+        messageSource.getMessage("foo", null, Locale.GERMAN);
+
+        // the resolving path of the locale is still cached, so the messages were not published again
+        Assert.assertEquals(1, messageSource.getResolvingPathStatistics().getMissCount());
+        Assert.assertEquals(1, messageSource.getResolvingPathStatistics().getHitCount());
+
+        delta.addChangedMessage(basename, Locale.GERMAN, "foo", "baz");
+        messageSource.reloadChanged();
+
+        Assert.assertEquals("baz", messageSource.getMessage("foo", null, Locale.GERMAN));
+    }
+
+
+    @Test
+    public void reloadingAllBasenamesAdvancesWatermark() {
+
+        DeltaMessageProvider provider = Mockito.mock(DeltaMessageProvider.class);
+        Mockito.when(provider.supportsDelta()).thenReturn(true);
+        Mockito.when(provider.getWatermark()).thenReturn(1L);
+        Mockito.when(provider.getMessages(basename)).thenReturn(messages);
+        Mockito.when(provider.getMessageDelta(Mockito.anyLong())).thenReturn(new MessageDelta(5));
+
+        messageSource.setMessageProvider(provider);
+        messageSource.initialize();
+
+        Mockito.when(provider.getWatermark()).thenReturn(5L);
+        messageSource.reload(basename);
+        messageSource.reloadChanged();
+
+        Mockito.verify(provider).getMessageDelta(5);
+        Mockito.verify(provider, Mockito.never()).getMessageDelta(1);
+    }
+
+
+    @Test
+    public void initializesAllBasenamesAtOnceFromBulkProvider() {
+
+        BulkMessageProvider provider = Mockito.mock(BulkMessageProvider.class);
+        Map<String, Messages> all = new LinkedHashMap<String, Messages>();
+        all.put(basename, messages);
+        all.put("other", new Messages());
+        all.get("other").addMessage(Locale.GERMAN, "other", "other");
+        Mockito.when(provider.getAllMessages()).thenReturn(all);
+
+        messageSource = new InitializableMessageSource();
+        messageSource.setMessageProvider(provider);
+        messageSource.initialize();
+
+        Assert.assertEquals("other", messageSource.getMessage("other", null, Locale.GERMAN));
+        Mockito.verify(provider, Mockito.never()).getMessages(Mockito.anyString());
+        Mockito.verify(provider, Mockito.never()).getAvailableBaseNames();
+    }
+
+
+    @Test
+    public void readsMessagesOnDemand() {
+
+        LookupMessageProvider provider = Mockito.mock(LookupMessageProvider.class);
+        messages.addMessage(null, "foo", "default");
+        messages.addMessage(Locale.GERMAN, "foo", "german");
+        Mockito.when(provider.getMessagesByCode(Collections.singletonList(basename), "foo")).thenReturn(
+            Collections.singletonMap(basename, messages));
+        Mockito.when(provider.getMessagesByCode(Collections.singletonList(basename), "missing")).thenReturn(
+            Collections.<String, Messages>emptyMap());
+
+        messageSource.setMessageProvider(provider);
+        messageSource.setDefaultLocale(null);
+        messageSource.setLazyLookup(true);
+        messageSource.initialize();
+
+        Assert.assertEquals("german", messageSource.getMessage("foo", null, Locale.GERMAN));
+        Assert.assertEquals("german", messageSource.getMessage("foo", null, Locale.GERMANY));
+        Assert.assertEquals("default", messageSource.getMessage("foo", null, Locale.ENGLISH));
+        Assert.assertEquals("x", messageSource.getMessage("missing", null, "x", Locale.GERMAN));
+        Assert.assertEquals("x", messageSource.getMessage("missing", null, "x", Locale.GERMAN));
+
+        Mockito.verify(provider, Mockito.times(1)).getMessagesByCode(Collections.singletonList(basename), "foo");
+        Mockito.verify(provider, Mockito.times(1)).getMessagesByCode(Collections.singletonList(basename), "missing");
+        Mockito.verify(provider, Mockito.never()).getMessages(basename);
+    }
+
+
+    @Test
+    public void prefetchesSiblingCodes() {
+
+        LookupMessageProvider provider = Mockito.mock(LookupMessageProvider.class);
+        messages.addMessage(Locale.GERMAN, "user.name", "Name");
+        messages.addMessage(Locale.GERMAN, "user.mail", "Mail");
+        Mockito.when(provider.getMessagesByCodePrefix(Collections.singletonList(basename), "user.", 1000))
+            .thenReturn(Collections.singletonMap(basename, messages));
+
+        messageSource.setMessageProvider(provider);
+        messageSource.setLazyLookup(true);
+        messageSource.setPrefetchSiblingCodes(true);
+        messageSource.initialize();
+
+        Assert.assertEquals("Name", messageSource.getMessage("user.name", null, Locale.GERMAN));
+        Assert.assertEquals("Mail", messageSource.getMessage("user.mail", null, Locale.GERMAN));
+
+        // known not to exist from reading the prefix
+        Assert.assertEquals("x", messageSource.getMessage("user.unknown", null, "x", Locale.GERMAN));
+        Assert.assertEquals("x", messageSource.getMessage("user.other", null, "x", Locale.GERMAN));
+
+        Mockito.verify(provider, Mockito.times(1)).getMessagesByCodePrefix(Collections.singletonList(basename),
+            "user.", 1000);
+        Mockito.verify(provider, Mockito.never()).getMessagesByCode(Mockito.anyCollection(), Mockito.anyString());
+        Assert.assertEquals(1, messageSource.getMessageCacheStatistics().getHitCount());
+    }
+
+
+    @Test
+    public void readsCodesOneByOneIfPrefixHasTooManyMessages() {
+
+        LookupMessageProvider provider = Mockito.mock(LookupMessageProvider.class);
+        messages.addMessage(Locale.GERMAN, "user.name", "Name");
+        Mockito.when(provider.getMessagesByCodePrefix(Collections.singletonList(basename), "user.", 10)).thenReturn(
+            null);
+        Mockito.when(provider.getMessagesByCode(Collections.singletonList(basename), "user.name")).thenReturn(
+            Collections.singletonMap(basename, messages));
+        Mockito.when(provider.getMessagesByCode(Collections.singletonList(basename), "user.mail")).thenReturn(
+            Collections.<String, Messages>emptyMap());
+
+        messageSource.setMessageProvider(provider);
+        messageSource.setLazyLookup(true);
+        messageSource.setPrefetchSiblingCodes(true);
+        messageSource.setMaxPrefetchedMessages(10);
+        messageSource.initialize();
+
+        Assert.assertEquals("Name", messageSource.getMessage("user.name", null, Locale.GERMAN));
+        Assert.assertEquals("x", messageSource.getMessage("user.mail", null, "x", Locale.GERMAN));
+
+        // too many messages the first time, so the prefix is not read again
+        Mockito.verify(provider, Mockito.times(1)).getMessagesByCodePrefix(Collections.singletonList(basename),
+            "user.", 10);
+        Mockito.verify(provider, Mockito.times(1)).getMessagesByCode(Collections.singletonList(basename),
+            "user.name");
+        Mockito.verify(provider, Mockito.times(1)).getMessagesByCode(Collections.singletonList(basename),
+            "user.mail");
+    }
+
+
+    @Test
+    public void readsCodeMissedByConcurrentThreadsOnce() throws InterruptedException {
+
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+        messages.addMessage(Locale.GERMAN, "foo", "german");
+
+        messageSource.setMessageProvider(new LookupMessageProvider() {
+
+                public Map<String, Messages> getMessagesByCode(Collection<String> basenames, String code) {
+
+                    reads.incrementAndGet();
+                    reading.countDown();
+
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+
+                    return Collections.singletonMap(basename, messages);
+                }
+
+
+                public Map<String, Messages> getMessagesByCodePrefix(Collection<String> basenames,
+                    String codePrefix, int maxMessages) {
+
+                    throw new UnsupportedOperationException();
+                }
+
+
+                public Messages getMessages(String basename) {
+
+                    throw new UnsupportedOperationException();
+                }
+
+
+                public Collection<String> getAvailableBaseNames() {
+
+                    return Collections.singletonList(basename);
+                }
+            });
+        messageSource.setLazyLookup(true);
+        messageSource.initialize();
+
+        final AtomicReference<String> resolved = new AtomicReference<String>();
+        Thread first = new Thread(new Runnable() {
+
+                    public void run() {
+
+                        resolved.set(messageSource.getMessage("foo", null, Locale.GERMAN));
+                    }
+                });
+        first.start();
+        reading.await();
+
+        Thread second = new Thread(new Runnable() {
+
+                    public void run() {
+
+                        messageSource.getMessage("foo", null, Locale.GERMAN);
+                    }
+                });
+        second.start();
+
+        // the second thread waits for the read of the first one
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+
+        release.countDown();
+        first.join();
+        second.join();
+
+        Assert.assertEquals("german", resolved.get());
+        Assert.assertEquals(1, reads.get());
+    }
+
+
+    @Test
+    public void reloadsBasenamesReportedAsChanged() throws Exception {
+
+        ObservableMessageProvider provider = Mockito.mock(ObservableMessageProvider.class);
+        messages.addMessage(Locale.GERMAN, "foo", "old");
+        Messages changed = new Messages();
+        changed.addMessage(Locale.GERMAN, "foo", "new");
+        Mockito.when(provider.getMessages(basename)).thenReturn(messages, changed);
+        Mockito.when(provider.getAvailableBaseNames()).thenReturn(Collections.singletonList(basename));
+
+        messageSource.setMessageProvider(provider);
+        messageSource.setReloadOnChange(true);
+        messageSource.afterPropertiesSet();
+
+        Assert.assertEquals("old", messageSource.getMessage("foo", null, Locale.GERMAN));
+
+        ArgumentCaptor<MessageChangeListener> listener = ArgumentCaptor.forClass(MessageChangeListener.class);
+        Mockito.verify(provider).addMessageChangeListener(listener.capture());
+        listener.getValue().messagesChanged(Collections.singleton(basename));
+
+        Assert.assertEquals("new", messageSource.getMessage("foo", null, Locale.GERMAN));
+
+        messageSource.destroy();
+        Mockito.verify(provider).removeMessageChangeListener(listener.getValue());
+    }
+
+
+    private void waitFor(long count, boolean failures) throws InterruptedException {
+
+        for (int i = 0; i < 500; i++) {
+            long current = failures ? messageSource.getInitializationStatistics().getFailureCount()
+                                    : messageSource.getInitializationStatistics().getSuccessCount();
+
+            if (current >= count) {
+                return;
+            }
+
+            Thread.sleep(10);
+        }
+
+        Assert.fail("Refresh did not happen");
+    }
+
 }
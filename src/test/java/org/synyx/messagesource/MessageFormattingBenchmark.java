@@ -0,0 +1,105 @@
+package org.synyx.messagesource;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Measures the throughput of formatting the same message with arguments from several threads at once, with the
+ * shared {@link java.text.MessageFormat}s and with thread-confined ones. Not run by the build, start it with
+ * <code>java -cp ... org.synyx.messagesource.MessageFormattingBenchmark [seconds per run]</code>.
+ *
+ * @author  agent - agent@local
+ */
+public final class MessageFormattingBenchmark {
+
+    private MessageFormattingBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+
+        long duration = args.length > 0 ? Long.parseLong(args[0]) * 1000 : 2000;
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("threads  shared (ops/ms)  thread-confined (ops/ms)");
+
+        for (int threads = 1; threads <= processors * 2; threads *= 2) {
+            double shared = run(false, threads, duration);
+            double confined = run(true, threads, duration);
+
+            System.out.println(String.format("%7d  %15.0f  %24.0f", threads, shared, confined));
+        }
+    }
+
+
+    private static double run(boolean threadConfinedFormats, int threadCount, final long duration)
+        throws InterruptedException {
+
+        final Messages messages = new Messages();
+        messages.addMessage(Locale.GERMAN, "title", "{0} - page {1,number,integer} of {2,number,integer}");
+
+        final InitializableMessageSource messageSource = new InitializableMessageSource();
+        messageSource.setBasename("benchmark");
+        messageSource.setMessageProvider(new MessageProvider() {
+
+                public Messages getMessages(String basename) {
+
+                    return messages;
+                }
+
+
+                public Collection<String> getAvailableBaseNames() {
+
+                    return Collections.singleton("benchmark");
+                }
+            });
+        messageSource.setThreadConfinedFormats(threadConfinedFormats);
+        messageSource.initialize();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong operations = new AtomicLong();
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                        public void run() {
+
+                            Object[] args = new Object[] { "Catalog", 3, 42 };
+                            long count = 0;
+
+                            try {
+                                start.await();
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+
+                            long end = System.currentTimeMillis() + duration;
+
+                            while (System.currentTimeMillis() < end) {
+                                for (int j = 0; j < 1000; j++) {
+                                    messageSource.getMessage("title", args, Locale.GERMAN);
+                                }
+
+                                count += 1000;
+                            }
+
+                            operations.addAndGet(count);
+                        }
+                    });
+            threads[i].start();
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return operations.get() / (double) duration;
+    }
+}
@@ -0,0 +1,215 @@
+package org.synyx.messagesource;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.synyx.messagesource.util.LocaleUtils;
+
+
+/**
+ * Measures the memory allocated and the time taken by resolving messages, with 12 basenames and a fallback path of 5
+ * locales (de_DE_formal, de_DE, de, the default locale en and the messages without locale). For comparison the same
+ * lookups are done the way messages used to be stored: in a map by basename and locale joined to a string.
+ *
+ * @author  agent - agent@local
+ */
+public class MessageResolutionAllocationUnitTest {
+
+    private static final int BASENAMES = 12;
+    private static final int ITERATIONS = 50000;
+
+    private static final Locale LOCALE = new Locale("de", "DE", "formal");
+
+    private InitializableMessageSource messageSource;
+    private Map<String, Map<String, String>> legacyMessages;
+    private List<String> basenames;
+    private List<Locale> path;
+
+
+    @Before
+    public void before() {
+
+        final Map<String, Messages> messagesByBasename = new HashMap<String, Messages>();
+        legacyMessages = new HashMap<String, Map<String, String>>();
+        basenames = new ArrayList<String>();
+
+        for (int i = 0; i < BASENAMES; i++) {
+            String basename = "basename" + i;
+            Messages messages = new Messages();
+
+            for (int j = 0; j < 100; j++) {
+                messages.addMessage(null, basename + ".code" + j, "message " + j);
+                messages.addMessage(Locale.ENGLISH, basename + ".english" + j, "english " + j);
+            }
+
+            basenames.add(basename);
+            messagesByBasename.put(basename, messages);
+
+            for (Locale locale : messages.getLocales()) {
+                legacyMessages.put(basename + locale, messages.getMessages(locale));
+            }
+        }
+
+        messageSource = new InitializableMessageSource();
+        messageSource.setDefaultLocale(Locale.ENGLISH);
+        messageSource.setMessageProvider(new MessageProvider() {
+
+                public Messages getMessages(String basename) {
+
+                    return messagesByBasename.get(basename);
+                }
+
+
+                public Collection<String> getAvailableBaseNames() {
+
+                    return basenames;
+                }
+            });
+        messageSource.initialize();
+
+        path = LocaleUtils.getPath(LOCALE, Locale.ENGLISH);
+    }
+
+
+    @Test
+    public void resolvesMessagesWithoutAllocating() {
+
+        Assume.assumeTrue(isAllocationMeasurable());
+
+        // the last basename, found at the end of the fallback path, and an unknown code
+        String[] codes = new String[] { "basename11.code99", "basename11.english99", "unknown" };
+        Resolution resolution = new Resolution() {
+
+            public Object resolve(String code) {
+
+                return messageSource.resolveCodeWithoutArguments(code, LOCALE);
+            }
+        };
+        Resolution legacyResolution = new Resolution() {
+
+            public Object resolve(String code) {
+
+                return resolveLegacy(code);
+            }
+        };
+
+        Assert.assertEquals("message 99", resolution.resolve(codes[0]));
+        Assert.assertEquals("message 99", legacyResolution.resolve(codes[0]));
+        Assert.assertEquals("english 99", resolution.resolve(codes[1]));
+        Assert.assertNull(resolution.resolve(codes[2]));
+
+        // the first runs let the JIT compile the code
+        measure(resolution, codes);
+        measure(legacyResolution, codes);
+
+        Measurement measurement = measure(resolution, codes);
+        Measurement legacy = measure(legacyResolution, codes);
+
+        System.out.println(String.format("resolving %d messages: %s, as strings joined by basename and locale: %s",
+                ITERATIONS * codes.length, measurement, legacy));
+
+        Assert.assertTrue("allocated " + measurement, measurement.bytesPerResolution() < 1);
+        Assert.assertTrue(legacy.bytesPerResolution() > measurement.bytesPerResolution());
+    }
+
+
+    /**
+     * Resolves the given code the way messages used to be stored, joining basename and locale for each lookup.
+     */
+    private String resolveLegacy(String code) {
+
+        for (Locale locale : path) {
+            for (String basename : basenames) {
+                Map<String, String> messages = legacyMessages.get(basename + locale);
+
+                if (messages != null && messages.containsKey(code)) {
+                    return messages.get(code);
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+    private Measurement measure(Resolution resolution, String[] codes) {
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int found = 0;
+
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String code : codes) {
+                if (resolution.resolve(code) != null) {
+                    found++;
+                }
+            }
+        }
+
+        long time = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+        Assert.assertEquals(ITERATIONS * 2, found);
+
+        return new Measurement(allocated, time, ITERATIONS * codes.length);
+    }
+
+
+    private boolean isAllocationMeasurable() {
+
+        try {
+            Object threads = ManagementFactory.getThreadMXBean();
+
+            return threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+        } catch (NoClassDefFoundError e) {
+            return false;
+        }
+    }
+
+    private interface Resolution {
+
+        Object resolve(String code);
+    }
+
+    private static class Measurement {
+
+        private final long bytes;
+        private final long nanos;
+        private final int resolutions;
+
+        Measurement(long bytes, long nanos, int resolutions) {
+
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.resolutions = resolutions;
+        }
+
+        double bytesPerResolution() {
+
+            return bytes / (double) resolutions;
+        }
+
+
+        @Override
+        public String toString() {
+
+            return String.format("%.1f bytes and %.0f ns per message", bytesPerResolution(),
+                    nanos / (double) resolutions);
+        }
+    }
+}
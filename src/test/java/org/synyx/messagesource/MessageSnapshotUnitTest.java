@@ -0,0 +1,117 @@
+package org.synyx.messagesource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.synyx.messagesource.util.BoundedConcurrentCache;
+
+
+public class MessageSnapshotUnitTest {
+
+    private List<Map<Locale, Map<String, CachedMessage>>> messages;
+    private BoundedConcurrentCache<Locale, Map<String, CachedMessage>> resolvingPath;
+
+
+    @Before
+    public void before() {
+
+        messages = new ArrayList<Map<Locale, Map<String, CachedMessage>>>();
+        messages.add(new HashMap<Locale, Map<String, CachedMessage>>());
+        messages.add(new HashMap<Locale, Map<String, CachedMessage>>());
+
+        resolvingPath = new BoundedConcurrentCache<Locale, Map<String, CachedMessage>>(16);
+    }
+
+
+    @Test
+    public void resolvesFirstBasenameBeforeMoreSpecificLocale() {
+
+        addMessage(0, null, "foo", "first default");
+        addMessage(1, Locale.GERMAN, "foo", "second german");
+        addMessage(1, Locale.GERMAN, "bar", "second german");
+
+        MessageSnapshot snapshot = createSnapshot(null);
+
+        Assert.assertEquals("first default", snapshot.resolve("foo", Locale.GERMAN).getMessage());
+        Assert.assertEquals("second german", snapshot.resolve("bar", Locale.GERMANY).getMessage());
+        Assert.assertNull(snapshot.resolve("bar", Locale.FRENCH));
+    }
+
+
+    @Test
+    public void resolvesAlongResolvingPath() {
+
+        addMessage(0, null, "foo", "default");
+        addMessage(0, Locale.ENGLISH, "foo", "english");
+        addMessage(0, Locale.GERMAN, "foo", "german");
+        addMessage(0, Locale.GERMANY, "foo", "germany");
+
+        MessageSnapshot snapshot = createSnapshot(Locale.ENGLISH);
+
+        Assert.assertEquals("germany", snapshot.resolve("foo", Locale.GERMANY).getMessage());
+        Assert.assertEquals("german", snapshot.resolve("foo", new Locale("de", "AT")).getMessage());
+        Assert.assertEquals("english", snapshot.resolve("foo", Locale.FRENCH).getMessage());
+        Assert.assertEquals("default", snapshot.resolve("foo", null).getMessage());
+    }
+
+
+    @Test
+    public void sharesViewsOfLocalesWithSameExistingPath() {
+
+        addMessage(0, null, "foo", "default");
+        addMessage(0, Locale.GERMAN, "foo", "german");
+
+        MessageSnapshot snapshot = createSnapshot(null);
+
+        // de_AT, de_CH and de all end up with de and the default messages
+        Assert.assertEquals("german", snapshot.resolve("foo", new Locale("de", "AT")).getMessage());
+        Assert.assertEquals("german", snapshot.resolve("foo", new Locale("de", "CH")).getMessage());
+        Assert.assertEquals("german", snapshot.resolve("foo", Locale.GERMAN).getMessage());
+        Assert.assertEquals(1, snapshot.getViewCount());
+
+        Assert.assertEquals("default", snapshot.resolve("foo", Locale.FRENCH).getMessage());
+        Assert.assertEquals("default", snapshot.resolve("foo", Locale.ITALIAN).getMessage());
+        Assert.assertEquals(2, snapshot.getViewCount());
+        Assert.assertEquals(5, resolvingPath.size());
+    }
+
+
+    @Test
+    public void rejectsUnknownCodesWithoutBuildingView() {
+
+        addMessage(0, Locale.GERMAN, "foo", "german");
+
+        MessageSnapshot snapshot = createSnapshot(null);
+
+        Assert.assertNull(snapshot.resolve("unknown", Locale.GERMAN));
+        Assert.assertEquals(0, snapshot.getViewCount());
+        Assert.assertEquals(0, resolvingPath.size());
+    }
+
+
+    private MessageSnapshot createSnapshot(Locale defaultLocale) {
+
+        return new MessageSnapshot(Arrays.asList("first", "second"), messages, defaultLocale, resolvingPath);
+    }
+
+
+    private void addMessage(int basename, Locale locale, String code, String message) {
+
+        Map<String, CachedMessage> codes = messages.get(basename).get(locale);
+
+        if (codes == null) {
+            codes = new HashMap<String, CachedMessage>();
+            messages.get(basename).put(locale, codes);
+        }
+
+        codes.put(code, new CachedMessage(message, locale, null));
+    }
+}
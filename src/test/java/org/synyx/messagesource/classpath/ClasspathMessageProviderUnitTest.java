@@ -0,0 +1,136 @@
+package org.synyx.messagesource.classpath;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.synyx.messagesource.Messages;
+
+
+public class ClasspathMessageProviderUnitTest {
+
+    private File directory;
+    private File jar;
+    private ClassLoader classLoader;
+
+
+    @Before
+    public void before() throws IOException {
+
+        directory = File.createTempFile("messagesourcetest", null);
+        directory.delete();
+        new File(directory, "messages").mkdirs();
+
+        writeFile("messages/foo.properties", "key=foo");
+        writeFile("messages/foo_de.properties", "key=foo german");
+
+        jar = File.createTempFile("messagesourcetest", ".jar");
+
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+
+        try {
+            out.putNextEntry(new JarEntry("messages/"));
+            writeEntry(out, "messages/foo_de.properties", "key=shadowed");
+            writeEntry(out, "messages/bar_en_US.properties", "key=bar \\u00e4\\\n    continued");
+            writeEntry(out, "messages/my_messages_de.properties", "key=underscore");
+            writeEntry(out, "other/baz.properties", "key=baz");
+        } finally {
+            out.close();
+        }
+
+        classLoader = new URLClassLoader(new URL[] { directory.toURI().toURL(), jar.toURI().toURL() }, null);
+    }
+
+
+    @Test
+    public void testReadsFromDirectoriesAndJars() {
+
+        ClasspathMessageProvider provider = new ClasspathMessageProvider("/messages/", classLoader);
+
+        Assert.assertEquals(Arrays.asList("bar", "foo", "my_messages"),
+            new ArrayList<String>(provider.getAvailableBaseNames()));
+
+        Messages foo = provider.getMessages("foo");
+        Assert.assertEquals("foo", foo.getMessage(null, "key"));
+        Assert.assertEquals("foo german", foo.getMessage(Locale.GERMAN, "key"));
+
+        Assert.assertEquals("bar \u00e4continued", provider.getMessages("bar").getMessage(Locale.US, "key"));
+        Assert.assertEquals("underscore", provider.getMessages("my_messages").getMessage(Locale.GERMAN, "key"));
+        Assert.assertTrue(provider.getMessages("baz").getLocales().isEmpty());
+    }
+
+
+    @Test
+    public void testParsesFilesConcurrently() {
+
+        ClasspathMessageProvider provider = new ClasspathMessageProvider("messages", classLoader);
+        Map<String, Messages> sequential = provider.getAllMessages();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            provider.setParseExecutor(executor);
+
+            Map<String, Messages> concurrent = provider.getAllMessages();
+            Assert.assertEquals(sequential.keySet(), concurrent.keySet());
+
+            for (String basename : sequential.keySet()) {
+                Assert.assertEquals(sequential.get(basename).getLocales(), concurrent.get(basename).getLocales());
+
+                for (Locale locale : sequential.get(basename).getLocales()) {
+                    Assert.assertEquals(sequential.get(basename).getMessages(locale),
+                        concurrent.get(basename).getMessages(locale));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    private void writeFile(String name, String content) throws IOException {
+
+        OutputStream out = new FileOutputStream(new File(directory, name));
+
+        try {
+            out.write(content.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+
+    private void writeEntry(JarOutputStream out, String name, String content) throws IOException {
+
+        out.putNextEntry(new JarEntry(name));
+        out.write(content.getBytes("ISO-8859-1"));
+        out.closeEntry();
+    }
+
+
+    @After
+    public void after() {
+
+        new File(directory, "messages/foo.properties").delete();
+        new File(directory, "messages/foo_de.properties").delete();
+        new File(directory, "messages").delete();
+        directory.delete();
+        jar.delete();
+    }
+}
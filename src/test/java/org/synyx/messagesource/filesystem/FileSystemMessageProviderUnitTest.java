@@ -0,0 +1,333 @@
+package org.synyx.messagesource.filesystem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.synyx.messagesource.MessageChangeListener;
+import org.synyx.messagesource.Messages;
+
+
+public class FileSystemMessageProviderUnitTest {
+
+    private File directory;
+    private FileSystemMessageProvider provider;
+    private MessageChangeListener listener;
+
+
+    @Before
+    public void before() throws IOException {
+
+        directory = File.createTempFile("messagesourcetest", null);
+        directory.delete();
+        directory.mkdir();
+
+        provider = new FileSystemMessageProvider(directory);
+    }
+
+
+    @Test
+    public void testSeparatesBasenamesWithSamePrefix() throws IOException {
+
+        writeFile("foo.properties", "key", "foo");
+        writeFile("foo_de.properties", "key", "foo german");
+        writeFile("foobar_de.properties", "key", "foobar german");
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("foo", "foobar")), provider.getAvailableBaseNames());
+
+        Messages messages = provider.getMessages("foo");
+        Assert.assertEquals(2, messages.getLocales().size());
+        Assert.assertEquals("foo", messages.getMessage(null, "key"));
+        Assert.assertEquals("foo german", messages.getMessage(Locale.GERMAN, "key"));
+
+        Assert.assertEquals("foobar german", provider.getMessages("foobar").getMessage(Locale.GERMAN, "key"));
+    }
+
+
+    @Test
+    public void testReadsBasenamesContainingUnderscores() throws IOException {
+
+        writeFile("my_messages.properties", "key", "default");
+        writeFile("my_messages_de.properties", "key", "german");
+        writeFile("my_messages_de_AT_vienna.properties", "key", "viennese");
+        writeFile("app_de.properties", "key", "app");
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("my_messages", "app")), provider.getAvailableBaseNames());
+
+        Messages messages = provider.getMessages("my_messages");
+        Assert.assertEquals(3, messages.getLocales().size());
+        Assert.assertEquals("default", messages.getMessage(null, "key"));
+        Assert.assertEquals("german", messages.getMessage(Locale.GERMAN, "key"));
+        Assert.assertEquals("viennese", messages.getMessage(new Locale("de", "AT", "vienna"), "key"));
+
+        // a basename ending like a locale is still found by its name
+        Assert.assertEquals("app", provider.getMessages("app_de").getMessage(null, "key"));
+    }
+
+
+    @Test
+    public void testNoticesNewFiles() throws IOException {
+
+        writeFile("foo.properties", "key", "foo");
+        Assert.assertEquals(1, provider.getAvailableBaseNames().size());
+
+        writeFile("bar_en_US.properties", "key", "bar");
+
+        Assert.assertEquals(2, provider.getAvailableBaseNames().size());
+        Assert.assertEquals("bar", provider.getMessages("bar").getMessage(Locale.US, "key"));
+    }
+
+
+    @Test
+    public void testReadsSupportedLocalesOnly() throws IOException {
+
+        writeFile("foo.properties", "key", "foo");
+        writeFile("foo_de_AT.properties", "key", "austrian");
+        writeFile("foo_fr.properties", "key", "french");
+
+        provider.setSupportedLocales(Arrays.asList(Locale.GERMANY));
+
+        Messages messages = provider.getMessages("foo");
+        Assert.assertEquals("foo", messages.getMessage(null, "key"));
+        Assert.assertEquals("austrian", messages.getMessage(new Locale("de", "AT"), "key"));
+        Assert.assertNull(messages.getMessages(Locale.FRENCH));
+    }
+
+
+    @Test
+    public void testParsesFilesConcurrently() throws IOException {
+
+        for (String basename : new String[] { "foo", "bar", "baz" }) {
+            writeFile(basename + ".properties", "key", basename);
+
+            for (Locale locale : new Locale[] { Locale.GERMAN, Locale.FRANCE, Locale.ENGLISH }) {
+                writeFile(basename + "_" + locale + ".properties", "key", basename + " " + locale);
+            }
+        }
+
+        Map<String, Messages> sequential = provider.getAllMessages();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            provider.setParseExecutor(executor);
+
+            Map<String, Messages> concurrent = provider.getAllMessages();
+            Assert.assertEquals(Arrays.asList("bar", "baz", "foo"), new ArrayList<String>(concurrent.keySet()));
+
+            for (String basename : sequential.keySet()) {
+                Messages messages = concurrent.get(basename);
+                Assert.assertEquals(4, messages.getLocales().size());
+
+                for (Locale locale : sequential.get(basename).getLocales()) {
+                    Assert.assertEquals(sequential.get(basename).getMessages(locale), messages.getMessages(locale));
+                }
+            }
+
+            Assert.assertEquals("foo fr_FR", provider.getMessages("foo").getMessage(Locale.FRANCE, "key"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testReparsesBundlesModifiedWithinTimeGranularity() throws IOException {
+
+        provider.setCacheBundles(true);
+        writeFile("foo.properties", "key", "aaa");
+        File file = new File(directory, "foo.properties");
+        long modified = file.lastModified();
+
+        Assert.assertEquals("aaa", provider.getMessages("foo").getMessage(null, "key"));
+
+        // same size and modification time, as for a change within the same second
+        writeFile("foo.properties", "key", "bbb");
+        file.setLastModified(modified);
+        Assert.assertEquals("bbb", provider.getMessages("foo").getMessage(null, "key"));
+
+        writeFile("foo.properties", "key", "cccc");
+        file.setLastModified(modified - 10000);
+        Assert.assertEquals("cccc", provider.getMessages("foo").getMessage(null, "key"));
+    }
+
+
+    @Test
+    public void testDropsCachedBundlesOfReportedFiles() throws Exception {
+
+        assumeNativeWatchService();
+
+        provider.setCacheBundles(true);
+        provider.setDebounceDelay(0);
+        writeFile("foo.properties", "key", "aaa");
+        File file = new File(directory, "foo.properties");
+        long modified = System.currentTimeMillis() - 10000;
+        file.setLastModified(modified);
+
+        BlockingQueue<Collection<String>> changes = listen();
+        Assert.assertEquals("aaa", provider.getMessages("foo").getMessage(null, "key"));
+
+        // same size and modification time long ago, so only the reported change reveals it
+        writeFile("foo.properties", "key", "bbb");
+        file.setLastModified(modified);
+
+        Assert.assertEquals(Collections.singleton("foo"), changes.poll(5, TimeUnit.SECONDS));
+        Assert.assertEquals("bbb", provider.getMessages("foo").getMessage(null, "key"));
+    }
+
+
+    @Test
+    public void testReportsChangesByPolling() throws Exception {
+
+        writeFile("foo.properties", "key", "foo");
+        writeFile("bar.properties", "key", "bar");
+        provider.setPollInterval(50);
+
+        BlockingQueue<Collection<String>> changes = listen();
+        writeFile("bar_de.properties", "key", "bar german");
+
+        Assert.assertEquals(Collections.singleton("bar"), changes.poll(5, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    public void testPollsIfDirectoryCannotBeWatched() throws Exception {
+
+        provider = new FileSystemMessageProvider(directory) {
+
+            @Override
+            WatchService newWatchService(Path path) throws IOException {
+
+                throw new IOException("not supported");
+            }
+        };
+
+        writeFile("foo.properties", "key", "foo");
+
+        BlockingQueue<Collection<String>> changes = listen();
+        writeFile("bar.properties", "key", "bar");
+
+        long timeout = FileSystemMessageProvider.FALLBACK_POLL_INTERVAL * 2;
+        Assert.assertEquals(Collections.singleton("bar"), changes.poll(timeout, TimeUnit.MILLISECONDS));
+    }
+
+
+    @Test
+    public void testDoesNotModifyCachedBundles() throws IOException {
+
+        provider.setCacheBundles(true);
+        writeFile("foo.properties", "key", "foo");
+        new File(directory, "foo.properties").setLastModified(System.currentTimeMillis() - 10000);
+
+        Messages messages = provider.getMessages("foo");
+        messages.addMessage(null, "key", "modified");
+        messages.addMessage(null, "added", "added");
+
+        Assert.assertEquals("modified", messages.getMessage(null, "key"));
+        Assert.assertEquals("foo", provider.getMessages("foo").getMessage(null, "key"));
+        Assert.assertEquals(1, provider.getMessages("foo").getMessages(null).size());
+    }
+
+
+    @Test
+    public void testReportsBurstOfChangesOnceByWatching() throws Exception {
+
+        assumeNativeWatchService();
+
+        writeFile("foo.properties", "key", "foo");
+
+        // long enough for the writes below, which take a few milliseconds
+        provider.setDebounceDelay(1000);
+
+        BlockingQueue<Collection<String>> changes = listen();
+        writeFile("foo_de.properties", "key", "foo german");
+        writeFile("bar.properties", "key", "bar");
+        writeFile("foo_en.properties", "key", "foo english");
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("foo", "bar")), changes.poll(5, TimeUnit.SECONDS));
+        Assert.assertNull(changes.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+
+    /**
+     * Skips the test on platforms whose {@link WatchService} polls (like macOS), since these report changes seconds
+     * later and only by modification time.
+     */
+    private void assumeNativeWatchService() throws IOException {
+
+        WatchService watchService = directory.toPath().getFileSystem().newWatchService();
+
+        try {
+            Assume.assumeTrue(!watchService.getClass().getName().contains("Polling"));
+        } finally {
+            watchService.close();
+        }
+    }
+
+
+    private BlockingQueue<Collection<String>> listen() {
+
+        final BlockingQueue<Collection<String>> changes = new LinkedBlockingQueue<Collection<String>>();
+        listener = new MessageChangeListener() {
+
+            public void messagesChanged(Collection<String> basenames) {
+
+                changes.add(new HashSet<String>(basenames));
+            }
+        };
+        provider.addMessageChangeListener(listener);
+
+        return changes;
+    }
+
+
+    private void writeFile(String name, String key, String value) throws IOException {
+
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+
+        FileOutputStream out = new FileOutputStream(new File(directory, name));
+
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+
+    @After
+    public void after() {
+
+        if (listener != null) {
+            provider.removeMessageChangeListener(listener);
+        }
+
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        directory.delete();
+    }
+}
@@ -18,6 +18,7 @@ import java.util.Properties;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.synyx.messagesource.FingerprintingMessageProvider;
 import org.synyx.messagesource.MessageAcceptor;
 import org.synyx.messagesource.MessageProvider;
 import org.synyx.messagesource.Messages;
@@ -125,6 +126,49 @@ public class ImporterUnitTest {
 
     }
 
+    @Test
+    public void testImportChangedOnly() {
+
+        FingerprintingMessageAcceptor fingerprintingSource = new FingerprintingMessageAcceptor();
+        fingerprintingSource.setMessages("foo", messages);
+        fingerprintingSource.setMessages("bar", messages);
+
+        Importer importer = new Importer(fingerprintingSource, target);
+        importer.importChangedMessages();
+        assertThat(target.getAvailableBaseNames().size(), is(2));
+
+        target.messageMap.clear();
+        fingerprintingSource.fingerprints.put("bar", "changed");
+        importer.importChangedMessages();
+
+        assertThat(target.getAvailableBaseNames().size(), is(1));
+        assertThat(target.getMessages("bar"), is(messages));
+    }
+
+    class FingerprintingMessageAcceptor extends SimpleMessageAcceptor implements FingerprintingMessageProvider {
+
+        Map<String, String> fingerprints = new HashMap<String, String>();
+
+
+        @Override
+        public void setMessages(String basename, Messages messages) {
+
+            super.setMessages(basename, messages);
+            fingerprints.put(basename, "initial");
+        }
+
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.synyx.messagesource.FingerprintingMessageProvider#getFingerprints()
+         */
+        public Map<String, String> getFingerprints() {
+
+            return new HashMap<String, String>(fingerprints);
+        }
+    }
+
     class SimpleMessageAcceptor implements MessageAcceptor, MessageProvider {
 
         Map<String, Messages> messageMap = new HashMap<String, Messages>();
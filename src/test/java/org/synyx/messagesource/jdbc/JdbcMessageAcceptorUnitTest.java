@@ -1,5 +1,11 @@
 package org.synyx.messagesource.jdbc;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,6 +18,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import org.synyx.messagesource.Messages;
 import org.synyx.messagesource.util.LocaleUtils;
 
@@ -44,6 +51,42 @@ public class JdbcMessageAcceptorUnitTest {
     }
 
 
+    @Test
+    public void testAppliesFetchSizeToQueriesOnly() {
+
+        final BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:~/test");
+
+        final List<String> fetched = new ArrayList<String>();
+
+        // records the statements a fetch size is set for, accepting the one for MySQL that H2 rejects
+        provider.setDataSource(new DelegatingDataSource(ds) {
+
+                @Override
+                public Connection getConnection() throws SQLException {
+
+                    return record(ds.getConnection(), fetched);
+                }
+            });
+        provider.setStreamResults(true);
+
+        Messages messages = new Messages();
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        provider.setMessages("base", messages);
+        messages.addMessage(Locale.GERMAN, "foo", "changed");
+        provider.setMessages("base", messages);
+
+        Assert.assertFalse(fetched.isEmpty());
+
+        for (String sql : fetched) {
+            Assert.assertTrue(sql, sql.startsWith("SELECT"));
+        }
+
+        assertMessage("de", "", "", "foo", "changed");
+    }
+
+
     @Test
     public void testHasMessage() {
 
@@ -75,6 +118,119 @@ public class JdbcMessageAcceptorUnitTest {
     }
 
 
+    @Test
+    public void testWritesOnlyDifferences() {
+
+        Messages messages = new Messages();
+        messages.addMessage(Locale.GERMAN, "kept", "kept");
+        messages.addMessage(Locale.GERMAN, "changed", "old");
+        messages.addMessage(Locale.GERMAN, "removed", "removed");
+        messages.addMessage(null, "kept", "default");
+        provider.setMessages("base", messages);
+
+        // marks a row that must not be written again (it would get an empty variant then)
+        template.execute("UPDATE `Message` SET `variant` = NULL WHERE `key` = 'kept' AND `language` = ''");
+
+        messages.addMessage(Locale.GERMAN, "changed", "new");
+        messages.addMessage(Locale.GERMAN, "added", "added");
+        messages.removeMessage(Locale.GERMAN, "removed");
+        provider.setBatchSize(1);
+        provider.setMessages("base", messages);
+
+        assertMessage("de", null, null, "kept", "kept");
+        assertMessage("de", null, null, "changed", "new");
+        assertMessage("de", null, null, "added", "added");
+        assertMessage(null, null, null, "kept", "default");
+        Assert.assertNull(provider.getMessages("base").getMessage(Locale.GERMAN, "removed"));
+        Assert.assertEquals(4, template.queryForInt("SELECT COUNT(*) FROM `Message`"));
+        Assert.assertEquals(1, template.queryForInt("SELECT COUNT(*) FROM `Message` WHERE `variant` IS NULL"));
+    }
+
+
+    @Test
+    public void testNormalizesNullLocaleOfWrittenMessages() {
+
+        template.execute("INSERT INTO `Message` VALUES ('base', 'de', NULL, NULL, 'changed', 'old')");
+        template.execute("INSERT INTO `Message` VALUES ('base', 'de', NULL, NULL, 'removed', 'removed')");
+
+        Messages messages = new Messages();
+        messages.addMessage(Locale.GERMAN, "changed", "new");
+        provider.setMessages("base", messages);
+
+        assertMessage("de", null, null, "changed", "new");
+        Assert.assertEquals(1, template.queryForInt("SELECT COUNT(*) FROM `Message`"));
+        Assert.assertEquals(1, template.queryForInt("SELECT COUNT(*) FROM `Message` WHERE `country` = ''"));
+    }
+
+
+    @Test
+    public void testDeletesAllMessagesOfBasename() {
+
+        Messages messages = new Messages();
+        messages.addMessage(Locale.GERMAN, "foo", "foo");
+        messages.addMessage(null, "bar", "bar");
+        provider.setMessages("base", messages);
+        provider.setMessages("other", messages);
+
+        provider.setMessages("base", new Messages());
+
+        Assert.assertEquals(0, template.queryForInt("SELECT COUNT(*) FROM `Message` WHERE `basename` = 'base'"));
+        Assert.assertEquals(2, template.queryForInt("SELECT COUNT(*) FROM `Message` WHERE `basename` = 'other'"));
+    }
+
+
+    private static Connection record(Connection connection, List<String> fetched) {
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Recorder(fetched, connection));
+    }
+
+    /**
+     * Records the SQL of the statements created by a proxied connection that get a fetch size.
+     */
+    private static class Recorder implements InvocationHandler {
+
+        private final List<String> fetched;
+        private final Object target;
+        private String sql;
+
+        Recorder(List<String> fetched, Object target) {
+
+            this.fetched = fetched;
+            this.target = target;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if (method.getName().equals("setFetchSize")) {
+                fetched.add(sql);
+
+                if ((Integer) args[0] < 0) {
+                    return null;
+                }
+            }
+
+            Object result;
+
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (method.getName().equals("prepareStatement")) {
+                Recorder statement = new Recorder(fetched, result);
+                statement.sql = ((String) args[0]).trim();
+
+                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[] { PreparedStatement.class }, statement);
+            }
+
+            return result;
+        }
+    }
+
+
     private void assertMessage(String lang, String country, String variant, String key, String message) {
 
         Messages messages = provider.getMessages("base");
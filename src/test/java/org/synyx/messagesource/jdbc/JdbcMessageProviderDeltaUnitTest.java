@@ -0,0 +1,165 @@
+package org.synyx.messagesource.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Locale;
+
+import junit.framework.Assert;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.synyx.messagesource.MessageDelta;
+import org.synyx.messagesource.Messages;
+
+
+public class JdbcMessageProviderDeltaUnitTest {
+
+    private JdbcTemplate template;
+    private JdbcMessageProvider provider;
+
+
+    @Before
+    public void before() throws ClassNotFoundException, SQLException {
+
+        Class.forName("org.h2.Driver");
+
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:~/test");
+
+        template = new JdbcTemplate(ds);
+
+        template.execute("DROP Table Message IF EXISTS");
+        template.execute("CREATE TABLE `Message` (" + "`basename` VARCHAR( 31 ) NOT NULL ,"
+                + "`language` VARCHAR( 7 ) NULL ," + "`country` VARCHAR( 7 ) NULL ," + "`variant` VARCHAR( 7 ) NULL ,"
+                + "`key` VARCHAR( 255 ) NULL ," + "`message` TEXT NULL ," + "`lastModified` TIMESTAMP NULL ,"
+                + "`deleted` BOOLEAN NULL" + ")");
+
+        provider = new JdbcMessageProvider();
+        provider.setDataSource(ds);
+        provider.setLastModifiedColumn("lastModified");
+        provider.setDeletedColumn("deleted");
+
+    }
+
+
+    @Test
+    public void testReturnsChangesSinceWatermark() {
+
+        provider.setWatermarkLag(0);
+        insertMessage("foo", "old", 1000, false);
+        long watermark = provider.getWatermark();
+        Assert.assertEquals(1000, watermark);
+
+        insertMessage("bar", "new", 2000, false);
+        insertMessage("baz", "gone", 3000, true);
+
+        MessageDelta delta = provider.getMessageDelta(watermark + 1);
+
+        Assert.assertEquals(3000, delta.getWatermark());
+        Assert.assertNull(delta.getChangedMessages("base").getMessage(Locale.GERMAN, "foo"));
+        Assert.assertEquals("new", delta.getChangedMessages("base").getMessage(Locale.GERMAN, "bar"));
+        Assert.assertTrue(delta.getRemovedMessages("base").hasMessage(Locale.GERMAN, "baz"));
+    }
+
+
+    @Test
+    public void testReturnsChangesCommittedLateWithinLag() {
+
+        provider.setWatermarkLag(5000);
+        insertMessage("foo", "old", 10000, false);
+        long watermark = provider.getWatermark();
+        Assert.assertEquals(5000, watermark);
+
+        // committed after the watermark was read, but modified before the latest modification
+        insertMessage("late", "late", 8000, false);
+
+        MessageDelta delta = provider.getMessageDelta(watermark);
+        Assert.assertEquals("late", delta.getChangedMessages("base").getMessage(Locale.GERMAN, "late"));
+        Assert.assertEquals(5000, delta.getWatermark());
+
+        insertMessage("new", "new", 20000, false);
+        Assert.assertEquals(15000, provider.getMessageDelta(delta.getWatermark()).getWatermark());
+    }
+
+
+    @Test
+    public void testIgnoresDeletedMessages() {
+
+        insertMessage("foo", "bar", 1000, false);
+        insertMessage("gone", "gone", 1000, true);
+
+        Messages messages = provider.getMessages("base");
+
+        Assert.assertEquals("bar", messages.getMessage(Locale.GERMAN, "foo"));
+        Assert.assertFalse(messages.hasMessage(Locale.GERMAN, "gone"));
+    }
+
+
+    @Test
+    public void testFingerprintChangesWithModificationOnly() {
+
+        insertMessage("foo", "bar", 1000, false);
+        String fingerprint = provider.getFingerprints().get("base");
+
+        insertMessage("gone", "gone", 2000, true);
+        Assert.assertEquals(fingerprint, provider.getFingerprints().get("base"));
+
+        template.update("UPDATE `Message` SET `lastModified` = ? WHERE `key` = 'foo'", new Timestamp(3000));
+        Assert.assertFalse(fingerprint.equals(provider.getFingerprints().get("base")));
+    }
+
+
+    @Test
+    public void testSetsModificationOnInsert() {
+
+        Messages messages = new Messages();
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        provider.setMessages("base", messages);
+
+        MessageDelta delta = provider.getMessageDelta(0);
+        Assert.assertEquals("bar", delta.getChangedMessages("base").getMessage(Locale.GERMAN, "foo"));
+        Assert.assertTrue(delta.getWatermark() > 0);
+    }
+
+
+    @Test
+    public void testMarksRemovedMessagesAsDeleted() {
+
+        Messages messages = new Messages();
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        messages.addMessage(Locale.GERMAN, "gone", "gone");
+        provider.setMessages("base", messages);
+        long watermark = provider.getWatermark();
+
+        messages.removeMessage(Locale.GERMAN, "gone");
+        provider.setMessages("base", messages);
+
+        Assert.assertFalse(provider.getMessages("base").hasMessage(Locale.GERMAN, "gone"));
+        Assert.assertTrue(provider.getMessageDelta(watermark).getRemovedMessages("base").hasMessage(Locale.GERMAN,
+                "gone"));
+
+        messages.addMessage(Locale.GERMAN, "gone", "back");
+        provider.setMessages("base", messages);
+
+        Assert.assertEquals("back", provider.getMessages("base").getMessage(Locale.GERMAN, "gone"));
+    }
+
+
+    private void insertMessage(String key, String message, long lastModified, boolean deleted) {
+
+        template.update("INSERT INTO `Message` (`basename`, `language`, `key`, `message`, `lastModified`, `deleted`) "
+                + "VALUES ('base', 'de', ?, ?, ?, ?)", key, message, new Timestamp(lastModified), deleted);
+    }
+
+
+    @After
+    public void after() {
+
+        template.execute("DROP Table Message IF EXISTS");
+    }
+
+}
@@ -0,0 +1,145 @@
+package org.synyx.messagesource.jdbc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+import junit.framework.Assert;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileCopyUtils;
+import org.synyx.messagesource.Messages;
+
+
+public class JdbcMessageProviderSchemaUnitTest {
+
+    private JdbcTemplate template;
+    private JdbcMessageProvider provider;
+
+
+    @Before
+    public void before() throws ClassNotFoundException, SQLException {
+
+        Class.forName("org.h2.Driver");
+
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:~/test");
+
+        template = new JdbcTemplate(ds);
+        template.execute("DROP Table Message IF EXISTS");
+
+        provider = new JdbcMessageProvider();
+        provider.setDataSource(ds);
+    }
+
+
+    @Test
+    public void testRecommendedSchemaIsValid() throws IOException {
+
+        createTable("create_message_table_h2.sql");
+        provider.setLastModifiedColumn("lastModified");
+        provider.setDeletedColumn("deleted");
+
+        Assert.assertTrue(provider.validateSchema().isEmpty());
+
+        Messages messages = new Messages();
+        messages.addMessage(null, "foo", "default");
+        messages.addMessage(Locale.GERMAN, "foo", "bar");
+        provider.setMessages("base", messages);
+
+        Assert.assertEquals("default", provider.getMessages("base").getMessage(null, "foo"));
+        Assert.assertEquals("bar", provider.getMessages("base").getMessage(Locale.GERMAN, "foo"));
+    }
+
+
+    @Test
+    public void testWritesChangesWithRecommendedSchema() throws IOException {
+
+        createTable("create_message_table_h2.sql");
+        provider.setLastModifiedColumn("lastModified");
+        provider.setDeletedColumn("deleted");
+
+        Messages messages = new Messages();
+        messages.addMessage(null, "kept", "default");
+        messages.addMessage(Locale.GERMAN, "changed", "old");
+        messages.addMessage(Locale.GERMAN, "removed", "removed");
+        provider.setMessages("base", messages);
+
+        messages.addMessage(Locale.GERMAN, "changed", "new");
+        messages.addMessage(Locale.GERMAN, "added", "added");
+        messages.removeMessage(Locale.GERMAN, "removed");
+        provider.setMessages("base", messages);
+
+        Messages stored = provider.getMessages("base");
+        Assert.assertEquals("default", stored.getMessage(null, "kept"));
+        Assert.assertEquals("new", stored.getMessage(Locale.GERMAN, "changed"));
+        Assert.assertEquals("added", stored.getMessage(Locale.GERMAN, "added"));
+        Assert.assertNull(stored.getMessage(Locale.GERMAN, "removed"));
+        Assert.assertEquals(4, template.queryForInt("SELECT COUNT(*) FROM `Message`"));
+        Assert.assertEquals(1, template.queryForInt("SELECT COUNT(*) FROM `Message` WHERE `deleted`"));
+
+        // writing a removed message again revives its row
+        messages.addMessage(Locale.GERMAN, "removed", "again");
+        provider.setMessages("base", messages);
+
+        Assert.assertEquals("again", provider.getMessages("base").getMessage(Locale.GERMAN, "removed"));
+        Assert.assertEquals(4, template.queryForInt("SELECT COUNT(*) FROM `Message`"));
+        Assert.assertEquals(0, template.queryForInt("SELECT COUNT(*) FROM `Message` WHERE `deleted`"));
+    }
+
+
+    @Test
+    public void testReportsMissingIndexes() throws IOException {
+
+        createTable("create_message_table.sql");
+
+        List<String> problems = provider.validateSchema();
+
+        Assert.assertEquals(2, problems.size());
+        Assert.assertTrue(problems.get(0).contains("basename"));
+        Assert.assertTrue(problems.get(1).contains("key"));
+    }
+
+
+    @Test
+    public void testReportsMissingTableAndColumns() throws IOException {
+
+        Assert.assertEquals(1, provider.validateSchema().size());
+
+        createTable("create_message_table.sql");
+        provider.setLastModifiedColumn("lastModified");
+
+        Assert.assertTrue(provider.validateSchema().get(0).contains("lastModified"));
+    }
+
+
+    private void createTable(String file) throws IOException {
+
+        Reader reader = new InputStreamReader(new FileInputStream(new File(file)), "UTF-8");
+        String script = FileCopyUtils.copyToString(reader).replaceAll("(?m)^\\s*--.*$", "");
+
+        for (String statement : script.split(";")) {
+            if (statement.trim().length() > 0) {
+                template.execute(statement);
+            }
+        }
+    }
+
+
+    @After
+    public void after() {
+
+        template.execute("DROP Table Message IF EXISTS");
+    }
+
+}
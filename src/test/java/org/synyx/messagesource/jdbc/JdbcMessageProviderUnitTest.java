@@ -1,12 +1,21 @@
 package org.synyx.messagesource.jdbc;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
 
 import org.apache.commons.dbcp.BasicDataSource;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.synyx.messagesource.InitializableMessageSource;
+import org.synyx.messagesource.Messages;
 
 
 public class JdbcMessageProviderUnitTest {
@@ -91,6 +100,250 @@ public class JdbcMessageProviderUnitTest {
     }
 
 
+    @Test
+    public void testFingerprintChangesWithMessages() {
+
+        TestUtils.insertMessage(template, "de", "foo", "bar");
+        String fingerprint = provider.getFingerprints().get("base");
+        Assert.assertNotNull(fingerprint);
+        Assert.assertEquals(fingerprint, provider.getFingerprints().get("base"));
+
+        TestUtils.insertMessage(template, "de", "foo2", "bar2");
+        Assert.assertFalse(fingerprint.equals(provider.getFingerprints().get("base")));
+    }
+
+
+    @Test
+    public void testFingerprintChangesWithContentOfSameLength() {
+
+        TestUtils.insertMessage(template, "de", "foo", "bar");
+        String fingerprint = provider.getFingerprints().get("base");
+
+        template.update("UPDATE `Message` SET `message` = 'baz'");
+        Assert.assertFalse(fingerprint.equals(provider.getFingerprints().get("base")));
+    }
+
+
+    @Test
+    public void testFingerprintIgnoresUnsupportedLanguages() {
+
+        TestUtils.insertMessage(template, "de", "foo", "bar");
+        provider.setSupportedLocales(Arrays.asList(Locale.GERMAN));
+        String fingerprint = provider.getFingerprints().get("base");
+
+        TestUtils.insertMessage(template, "fr", "foo", "bar");
+        Assert.assertEquals(fingerprint, provider.getFingerprints().get("base"));
+    }
+
+
+    @Test
+    public void testServesMessageSourceWithoutLastModifiedColumn() {
+
+        TestUtils.insertMessage(template, "de", "foo", "bar");
+
+        InitializableMessageSource messageSource = new InitializableMessageSource();
+        messageSource.setMessageProvider(provider);
+        messageSource.initialize();
+
+        Assert.assertFalse(provider.supportsDelta());
+        Assert.assertEquals("bar", messageSource.getMessage("foo", null, Locale.GERMAN));
+
+        // changes are detected by fingerprints instead
+        template.update("UPDATE `Message` SET `message` = 'changed' WHERE `key` = 'foo'");
+        messageSource.reloadChanged();
+
+        Assert.assertEquals("changed", messageSource.getMessage("foo", null, Locale.GERMAN));
+    }
+
+
+    @Test
+    public void testReturnsMessagesOfManyBasenames() {
+
+        TestUtils.insertMessage(template, "de", "foo", "bar");
+        template.execute("INSERT INTO `Message` (`basename` ,`language`,`key` ,`message`) "
+                + "VALUES ('other', 'de', 'foo', 'other')");
+        template.execute("INSERT INTO `Message` (`basename` ,`language`,`key` ,`message`) "
+                + "VALUES ('ignored', 'de', 'foo', 'ignored')");
+
+        Map<String, Messages> all = provider.getAllMessages();
+        Assert.assertEquals(3, all.size());
+        Assert.assertEquals("bar", all.get("base").getMessage(Locale.GERMAN, "foo"));
+
+        Map<String, Messages> some = provider.getMessages(Arrays.asList("base", "other", "missing"));
+        Assert.assertEquals(2, some.size());
+        Assert.assertEquals("bar", some.get("base").getMessage(Locale.GERMAN, "foo"));
+        Assert.assertEquals("other", some.get("other").getMessage(Locale.GERMAN, "foo"));
+    }
+
+
+    @Test
+    public void testReturnsMessagesByCode() {
+
+        TestUtils.insertMessage(template, "de", "user.name", "Name");
+        TestUtils.insertMessage(template, "user.name", "name");
+        TestUtils.insertMessage(template, "de", "user_mail", "Mail");
+        TestUtils.insertMessage(template, "de", "other", "other");
+
+        Map<String, Messages> byCode = provider.getMessagesByCode(Arrays.asList("base"), "user.name");
+        Assert.assertEquals("Name", byCode.get("base").getMessage(Locale.GERMAN, "user.name"));
+        Assert.assertEquals("name", byCode.get("base").getMessage(null, "user.name"));
+        Assert.assertNull(byCode.get("base").getMessage(Locale.GERMAN, "other"));
+
+        // the underscore must not match any character
+        Map<String, Messages> byPrefix = provider.getMessagesByCodePrefix(Arrays.asList("base"), "user.", 2);
+        Assert.assertEquals("Name", byPrefix.get("base").getMessage(Locale.GERMAN, "user.name"));
+        Assert.assertNull(byPrefix.get("base").getMessage(Locale.GERMAN, "user_mail"));
+
+        // more messages than allowed
+        Assert.assertNull(provider.getMessagesByCodePrefix(Arrays.asList("base"), "user.", 1));
+
+        Assert.assertTrue(provider.getMessagesByCode(Arrays.asList("other"), "user.name").isEmpty());
+    }
+
+
+    @Test
+    public void testReturnsSupportedLocalesOnly() {
+
+        TestUtils.insertMessage(template, "foo", "default");
+        TestUtils.insertMessage(template, "de", "foo", "german");
+        TestUtils.insertMessage(template, "de", "AT", "foo", "austrian");
+        TestUtils.insertMessage(template, "fr", "foo", "french");
+
+        provider.setSupportedLocales(Arrays.asList(Locale.GERMANY));
+
+        Messages messages = provider.getMessages("base");
+        Assert.assertEquals("default", messages.getMessage(null, "foo"));
+        Assert.assertEquals("german", messages.getMessage(Locale.GERMAN, "foo"));
+        Assert.assertEquals("austrian", messages.getMessage(new Locale("de", "AT"), "foo"));
+        Assert.assertNull(messages.getMessage(Locale.FRENCH, "foo"));
+
+        Assert.assertNull(provider.getAllMessages().get("base").getMessage(Locale.FRENCH, "foo"));
+    }
+
+
+    @Test
+    public void testReadsPartitionsConcurrently() throws InterruptedException {
+
+        TestUtils.insertMessage(template, "foo", "default");
+        TestUtils.insertMessage(template, "de", "foo", "german");
+        TestUtils.insertMessage(template, "de", "AT", "foo", "austrian");
+        TestUtils.insertMessage(template, "fr", "foo", "french");
+        TestUtils.insertMessage(template, "en", "foo", "english");
+        TestUtils.insertMessage(template, "en", "bar", "english");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            provider.setPartitionCount(2);
+            provider.setPartitionExecutor(executor);
+
+            Messages messages = provider.getMessages("base");
+            Assert.assertEquals(5, messages.getLocales().size());
+            Assert.assertEquals("default", messages.getMessage(null, "foo"));
+            Assert.assertEquals("german", messages.getMessage(Locale.GERMAN, "foo"));
+            Assert.assertEquals("austrian", messages.getMessage(new Locale("de", "AT"), "foo"));
+            Assert.assertEquals("french", messages.getMessage(Locale.FRENCH, "foo"));
+            Assert.assertEquals("english", messages.getMessage(Locale.ENGLISH, "bar"));
+
+            Assert.assertTrue(provider.getMessages("missing").getLocales().isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testReadsManyBasenamesInPartitions() {
+
+        for (int i = 0; i < 60; i++) {
+            // a huge german basename, whose keys are split into ranges
+            insertMessage("huge", "de", (char) ('a' + i % 26) + "key" + i, "german " + i);
+        }
+
+        insertMessage("huge", null, "foo", "default");
+        insertMessage("huge", "en", "foo", "english");
+        insertMessage("small", "de", "foo", "small german");
+        insertMessage("other", "fr", "foo", "other french");
+
+        Map<String, Messages> expected = provider.getAllMessages();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            provider.setPartitionCount(4);
+            provider.setPartitionExecutor(executor);
+
+            assertSameMessages(expected, provider.getAllMessages());
+            assertSameMessages(expected, provider.getMessages(Arrays.asList("huge", "small", "other", "missing")));
+            Assert.assertEquals(61, provider.getMessages("huge").getMessages(Locale.GERMAN).size()
+                + provider.getMessages("huge").getMessages(Locale.ENGLISH).size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testReadsPartitionsOnInitializationExecutor() {
+
+        for (int i = 0; i < 20; i++) {
+            TestUtils.insertMessage(template, i % 2 == 0 ? "de" : "en", "key" + i, "message " + i);
+        }
+
+        // a single thread, which waits for the partitions while initializing
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            provider.setPartitionCount(4);
+            provider.setPartitionExecutor(executor);
+
+            InitializableMessageSource messageSource = new InitializableMessageSource();
+            messageSource.setMessageProvider(provider);
+            messageSource.setBasename("base");
+            messageSource.setInitializationExecutor(executor);
+            messageSource.initialize();
+
+            Assert.assertEquals("message 3", messageSource.getMessage("key3", null, Locale.ENGLISH));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    private void insertMessage(String basename, String language, String key, String message) {
+
+        template.update("INSERT INTO `Message` (`basename`, `language`, `key`, `message`) VALUES (?, ?, ?, ?)",
+            basename, language, key, message);
+    }
+
+
+    private void assertSameMessages(Map<String, Messages> expected, Map<String, Messages> actual) {
+
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+
+        for (String basename : expected.keySet()) {
+            Assert.assertEquals(expected.get(basename).getLocales(), actual.get(basename).getLocales());
+
+            for (Locale locale : expected.get(basename).getLocales()) {
+                Assert.assertEquals(expected.get(basename).getMessages(locale),
+                    actual.get(basename).getMessages(locale));
+            }
+        }
+    }
+
+
+    @Test
+    public void testReadsMessagesWithFetchSize() {
+
+        provider.setFetchSize(1);
+
+        TestUtils.insertMessage(template, "de", "foo", "bar");
+        TestUtils.insertMessage(template, "de", "foo2", "bar2");
+
+        TestUtils.assertMessage(provider, "de", null, null, "foo", "bar");
+        TestUtils.assertMessage(provider, "de", null, null, "foo2", "bar2");
+    }
+
+
     @After
     public void after() {
 
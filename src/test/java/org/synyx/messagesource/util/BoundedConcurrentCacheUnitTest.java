@@ -0,0 +1,109 @@
+package org.synyx.messagesource.util;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+public class BoundedConcurrentCacheUnitTest {
+
+    @Test
+    public void returnsCachedValue() {
+
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>(2);
+
+        Assert.assertNull(cache.get("foo"));
+        Assert.assertEquals("bar", cache.put("foo", "bar"));
+        Assert.assertEquals("bar", cache.get("foo"));
+
+        Assert.assertEquals(1, cache.getStatistics().getHitCount());
+        Assert.assertEquals(1, cache.getStatistics().getMissCount());
+    }
+
+
+    @Test
+    public void keepsFirstValue() {
+
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>(2);
+
+        cache.put("foo", "bar");
+        Assert.assertEquals("bar", cache.put("foo", "baz"));
+        Assert.assertEquals("bar", cache.get("foo"));
+    }
+
+
+    @Test
+    public void evictsOldestEntries() {
+
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>(2);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals("2", cache.get("b"));
+        Assert.assertEquals("3", cache.get("c"));
+        Assert.assertEquals(1, cache.getStatistics().getEvictionCount());
+    }
+
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() {
+
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>(2);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("3", cache.get("c"));
+    }
+
+
+    @Test
+    public void removesEntries() {
+
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>(2);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.remove("a");
+        cache.put("c", "3");
+
+        // the removed entry does not take up space any more, so nothing is evicted
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals("2", cache.get("b"));
+        Assert.assertEquals("3", cache.get("c"));
+        Assert.assertEquals(0, cache.getStatistics().getEvictionCount());
+    }
+
+
+    @Test
+    public void keepsFrequentlyUsedEntriesOfLargeCaches() {
+
+        BoundedConcurrentCache<Integer, Integer> cache = new BoundedConcurrentCache<Integer, Integer>(1000);
+
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+
+            // entry 0 is used all the time, so it is never evicted
+            Assert.assertEquals(Integer.valueOf(0), cache.get(0));
+        }
+
+        Assert.assertEquals(1000, cache.size());
+        Assert.assertEquals(9000, cache.getStatistics().getEvictionCount());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveSize() {
+
+        new BoundedConcurrentCache<String, String>(0);
+    }
+}
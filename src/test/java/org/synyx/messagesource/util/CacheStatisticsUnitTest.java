@@ -0,0 +1,41 @@
+package org.synyx.messagesource.util;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+public class CacheStatisticsUnitTest {
+
+    @Test
+    public void countsConcurrentlyRecordedLookups() throws InterruptedException {
+
+        final CacheStatistics statistics = new CacheStatistics();
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                        public void run() {
+
+                            for (int j = 0; j < 10000; j++) {
+                                statistics.recordHit();
+
+                                if (j % 4 == 0) {
+                                    statistics.recordMiss();
+                                }
+                            }
+                        }
+                    });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(80000, statistics.getHitCount());
+        Assert.assertEquals(20000, statistics.getMissCount());
+        Assert.assertEquals(0.2, statistics.getMissRatio(), 0.0001);
+    }
+}
@@ -0,0 +1,35 @@
+package org.synyx.messagesource.util;
+
+import java.util.Locale;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+public class LocaleCacheUnitTest {
+
+    private LocaleCache cache = new LocaleCache();
+
+
+    @Test
+    public void returnsSameLocalesAsLocaleUtils() {
+
+        Assert.assertNull(cache.getLocale(null, null, null));
+        Assert.assertEquals(Locale.GERMAN, cache.getLocale("de", null, null));
+        Assert.assertEquals(Locale.GERMANY, cache.getLocale("de", "DE", null));
+        Assert.assertEquals(LocaleUtils.toLocale("de", "DE", "POSIX"), cache.getLocale("de", "DE", "POSIX"));
+        Assert.assertNull(cache.getLocale(null, null, null));
+    }
+
+
+    @Test
+    public void returnsSharedInstances() {
+
+        Locale german = cache.getLocale("de", null, null);
+        cache.getLocale("en", null, null);
+
+        Assert.assertSame(german, cache.getLocale(new String("de"), null, null));
+        Assert.assertSame(german, cache.getLocale("de", null, null));
+    }
+}
@@ -0,0 +1,199 @@
+package org.synyx.messagesource.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that {@link PropertiesParser} reads the same properties as {@link Properties#load(java.io.Reader)}.
+ */
+public class PropertiesParserUnitTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final String[] CONTENTS = {
+        "", "key=value", "key = value", "key:value", "key value", "key\tvalue", "key\fvalue", "key", "key=",
+        "key = = value", "key  :  : value", "  key=value  ", "\n\n  \r\n\tkey=value\r\n", "# comment\nkey=value",
+        "! comment\nkey=value", "  # indented comment\nkey=value", "# comment \\\nkey=value", "key=#not a comment",
+        "key=a\\\n   b", "key=a\\\r\n   b", "key=a\\\r   b", "key=a\\\\\nb=c", "key=a\\\\\\\n  b", "key=a\\\n\nb=c",
+        "key=a\\\n# no comment", "key=a\\", "key=a\\\n", "key=a\\\n  \\\n  b", "\\\nkey=value", "a\\=b=c", "a\\:b:c",
+        "a\\ b c", "a\\\\=b", "\\#key=value", "key=\\t\\n\\r\\f\\\\\\x", "key=\\u0041\\u00e4\\u20AC", "\\u0041=\\u0042",
+        "key=first\nkey=second", "a=1\rb=2\nc=3\r\nd=4", "key=value\\ ", "key=\\\n", "=value", ":value", " = value",
+        "key=\u00e4\u00f6\u00fc\u20ac", "\ufeffkey=value", "k\\\ney=value", "key\\\n=value"
+    };
+
+    @Test
+    public void testReadsLikeProperties() throws IOException {
+
+        for (String content : CONTENTS) {
+            assertConforms(content);
+        }
+    }
+
+
+    @Test
+    public void testReadsRandomContentLikeProperties() throws IOException {
+
+        char[] alphabet = { 'a', 'b', ' ', '\t', '\f', '=', ':', '#', '!', '\\', '\\', '\n', '\r', 't', 'n', 'u',
+                '0', '\u00e4' };
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            char[] content = new char[random.nextInt(40)];
+
+            for (int j = 0; j < content.length; j++) {
+                content[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+
+            assertConforms(new String(content));
+        }
+    }
+
+
+    @Test
+    public void testDecodesLikePropertiesAndReaders() throws IOException {
+
+        byte[] bytes = "a=\u00e4\nb=\u20ac\u00fc\nc=x\n".getBytes(UTF_8);
+        byte[] malformed = { 'a', '=', (byte) 0xc3, 'x', (byte) 0xff, '\n', 'b', '=', (byte) 0xe2, (byte) 0x82 };
+
+        for (byte[] content : new byte[][] { bytes, malformed }) {
+            Properties latin1 = new Properties();
+            latin1.load(new ByteArrayInputStream(content));
+            Assert.assertEquals(toMap(latin1), parse(content, null));
+            Assert.assertEquals(toMap(latin1), parse(content, ISO_8859_1));
+
+            for (String encoding : new String[] { "UTF-8", "UTF-16", "windows-1252" }) {
+                Properties properties = new Properties();
+                properties.load(new InputStreamReader(new ByteArrayInputStream(content), encoding));
+                Assert.assertEquals(toMap(properties), parse(content, Charset.forName(encoding)));
+            }
+        }
+    }
+
+
+    @Test
+    public void testRejectsMalformedEscapesLikeProperties() {
+
+        for (String content : new String[] { "key=\\u12", "key=\\u12x4", "key=\\u", "\\uxxxx=value" }) {
+            try {
+                new Properties().load(new StringReader(content));
+                Assert.fail("Properties accepted " + content);
+            } catch (Exception e) {
+                Assert.assertTrue(e instanceof IllegalArgumentException);
+            }
+
+            try {
+                PropertiesParser.parse(content.toCharArray(), 0, content.length(), new HashMap<String, String>());
+                Assert.fail("Parser accepted " + content);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+
+    @Test
+    public void testLoadsSmallAndLargeFiles() throws IOException {
+
+        for (int count : new int[] { 10, 20000 }) {
+            StringBuilder content = new StringBuilder();
+
+            for (int i = 0; i < count; i++) {
+                content.append("key.").append(i).append(" = value \u00e4 ").append(i).append("\\\n    continued\n");
+            }
+
+            File file = File.createTempFile("propertiesparsertest", ".properties");
+
+            try {
+                FileOutputStream out = new FileOutputStream(file);
+
+                try {
+                    out.write(content.toString().getBytes(UTF_8));
+                } finally {
+                    out.close();
+                }
+
+                Properties properties = new Properties();
+                properties.load(new StringReader(content.toString()));
+
+                Assert.assertEquals(toMap(properties), PropertiesParser.load(file, UTF_8));
+
+                // nothing keeps the file open or mapped (which locks it on Windows)
+                Assert.assertTrue(file.delete());
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+
+    private void assertConforms(String content) throws IOException {
+
+        Properties properties = new Properties();
+        boolean malformed = false;
+
+        try {
+            properties.load(new StringReader(content));
+        } catch (IllegalArgumentException e) {
+            malformed = true;
+        }
+
+        // the parser must not read beyond the given range
+        String padded = "x=y\n" + content + "\\u00";
+        Map<String, String> parsed = new HashMap<String, String>();
+
+        try {
+            PropertiesParser.parse(padded.toCharArray(), 4, content.length(), parsed);
+            Assert.assertFalse("Parser accepted " + escape(content), malformed);
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue("Parser rejected " + escape(content), malformed);
+
+            return;
+        }
+
+        Assert.assertEquals("Parsing " + escape(content), toMap(properties), parsed);
+    }
+
+
+    private Map<String, String> parse(byte[] content, Charset charset) {
+
+        Map<String, String> parsed = new HashMap<String, String>();
+        PropertiesParser.parse(ByteBuffer.wrap(content), charset, parsed);
+
+        return parsed;
+    }
+
+
+    private Map<String, String> toMap(Properties properties) {
+
+        Map<String, String> map = new HashMap<String, String>();
+
+        for (String key : properties.stringPropertyNames()) {
+            map.put(key, properties.getProperty(key));
+        }
+
+        return map;
+    }
+
+
+    private String escape(String content) {
+
+        return content.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t").replace(
+                "\f", "\\f");
+    }
+}